@@ -0,0 +1,72 @@
+package altinn.platform.pdf.benchmarks;
+
+import altinn.platform.pdf.benchmarks.PdfContextFixtures.Fixture;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.services.PDFGenerator;
+import altinn.platform.pdf.utils.AppAssetCache;
+import altinn.platform.pdf.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the pdf of each fixture end to end, from the bound pdf context to the saved document, and from the request
+ * json including the binding, which keys the app assets. The pdf is written to a discarding stream so only the
+ * generation is measured. Reports the throughput and the sampled latency of a
+ * generation, run with -prof gc for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratePdfBenchmark {
+
+  @Param({"SMALL", "LARGE_REPEATING_GROUP", "MULTI_PAGE", "HUGE_CODELIST"})
+  private Fixture fixture;
+
+  /**
+   * Shares the preprocessed app assets between the generations, as the service does
+   */
+  @Param({"true", "false"})
+  private boolean assetCache;
+
+  private PdfContext pdfContext;
+  private String json;
+  private AppAssetCache cache;
+
+  @Setup
+  public void setup() throws IOException {
+    TextUtils.initializeLanguages();
+    pdfContext = PdfContextFixtures.create(fixture);
+    json = PdfContextFixtures.createJson(fixture).toString();
+    cache = new AppAssetCache(64, 64L * 1024 * 1024);
+  }
+
+  @Benchmark
+  public void generatePdf() throws IOException {
+    PDFGenerator generator = new PDFGenerator(pdfContext);
+    generator.setAssetCache(assetCache ? cache : null);
+    generator.generatePDF(OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void bindAndGeneratePdf() throws IOException {
+    PDFGenerator generator = new PDFGenerator(PdfContextFixtures.bind(json));
+    generator.setAssetCache(assetCache ? cache : null);
+    generator.generatePDF(OutputStream.nullOutputStream());
+  }
+}
@@ -0,0 +1,112 @@
+package altinn.platform.pdf.benchmarks;
+
+import altinn.platform.pdf.benchmarks.PdfContextFixtures.Fixture;
+import altinn.platform.pdf.layout.LayoutEngine;
+import altinn.platform.pdf.models.FormLayout;
+import altinn.platform.pdf.models.FormLayoutElement;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.TextResourceElement;
+import altinn.platform.pdf.utils.FontMetrics;
+import altinn.platform.pdf.utils.FontUtils;
+import altinn.platform.pdf.utils.FormDataIndex;
+import altinn.platform.pdf.utils.FormUtils;
+import altinn.platform.pdf.utils.TextUtils;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths of a generation, run over the fields and texts of each fixture: form data lookups, line wrapping,
+ * removal of chars the font can not draw and the setup of the repeating groups. Each invocation handles the next field
+ * or text of the fixture. Reports the throughput and the sampled latency, run with -prof gc for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+  private static final float WIDTH = PDRectangle.A4.getWidth() - 2 * LayoutEngine.MARGIN;
+
+  @Param({"SMALL", "LARGE_REPEATING_GROUP", "MULTI_PAGE", "HUGE_CODELIST"})
+  private Fixture fixture;
+
+  private FontMetrics font;
+  private FormDataIndex formData;
+  private List<List<FormLayoutElement>> layouts;
+  private String[] bindings;
+  private String[] texts;
+  private int nextBinding;
+  private int nextText;
+  private int nextLayout;
+
+  @Setup
+  public void setup() throws IOException, XMLStreamException {
+    PdfContext pdfContext = PdfContextFixtures.create(fixture);
+    font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+    formData = FormUtils.readFormData(pdfContext.getData(), null, value -> value);
+
+    layouts = new ArrayList<>();
+    List<String> bindingList = new ArrayList<>();
+    List<String> textList = new ArrayList<>();
+    for (FormLayout layout : pdfContext.getFormLayouts().values()) {
+      layouts.add(layout.getData().getLayout());
+      for (FormLayoutElement element : layout.getData().getLayout()) {
+        String binding = (element.getDataModelBindings() != null) ? element.getDataModelBindings().get("simpleBinding") : null;
+        if (binding != null) {
+          bindingList.add(binding);
+          textList.add(FormUtils.getFormDataByKey(binding, formData));
+        }
+      }
+    }
+    for (TextResourceElement resource : pdfContext.getTextResources().getResources()) {
+      textList.add(resource.getValue());
+    }
+    bindings = bindingList.toArray(new String[0]);
+    texts = textList.toArray(new String[0]);
+  }
+
+  @Benchmark
+  public String getFormDataByKey() {
+    nextBinding = (nextBinding + 1) % bindings.length;
+    return FormUtils.getFormDataByKey(bindings[nextBinding], formData);
+  }
+
+  @Benchmark
+  public List<String> splitTextToLines() {
+    return TextUtils.splitTextToLines(nextText(), font, LayoutEngine.FONT_SIZE, WIDTH);
+  }
+
+  @Benchmark
+  public String removeIllegalChars() {
+    return TextUtils.removeIllegalChars(nextText(), font);
+  }
+
+  @Benchmark
+  public List<FormLayoutElement> setupRepeatingGroups() {
+    nextLayout = (nextLayout + 1) % layouts.size();
+    return FormUtils.setupRepeatingGroups(layouts.get(nextLayout), formData);
+  }
+
+  private String nextText() {
+    nextText = (nextText + 1) % texts.length;
+    return texts[nextText];
+  }
+}
@@ -0,0 +1,271 @@
+package altinn.platform.pdf.benchmarks;
+
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.utils.AppAssetsKeyModule;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pdf contexts shaped like the ones apps send, generated from a fixed seed so every run benchmarks the same content.
+ * The contexts are built as json and bound with Jackson and the {@link AppAssetsKeyModule}, the way the request body is
+ * bound.
+ */
+public final class PdfContextFixtures {
+
+  /**
+   * The shapes of pdf benchmarked
+   */
+  public enum Fixture {
+    /**
+     * One layout with a handful of fields, the most common receipt
+     */
+    SMALL,
+    /**
+     * One layout with a repeating group of several hundred rows
+     */
+    LARGE_REPEATING_GROUP,
+    /**
+     * Many layouts ordered by the layout settings, with long texts wrapping over several lines
+     */
+    MULTI_PAGE,
+    /**
+     * Dropdowns and checkboxes backed by a code list of tens of thousands of options
+     */
+    HUGE_CODELIST
+  }
+
+  private static final ObjectMapper objectMapper = new ObjectMapper()
+    .registerModule(new AppAssetsKeyModule())
+    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  private static final String[] WORDS = {
+    "søknad", "om", "tilskudd", "til", "drift", "av", "virksomheten", "for", "året", "beløpet", "gjelder",
+    "kommune", "organisasjonsnummer", "bekreftelse", "Ærlig", "Øvre", "Åsen", "næringskode", "merverdiavgift", "og"
+  };
+
+  private PdfContextFixtures() {
+  }
+
+  /**
+   * Creates the pdf context of a fixture
+   * @param fixture the fixture
+   * @return a new pdf context
+   */
+  public static PdfContext create(Fixture fixture) {
+    return bind(createJson(fixture).toString());
+  }
+
+  /**
+   * Binds the json of a pdf context
+   * @param json the json
+   * @return the pdf context
+   */
+  public static PdfContext bind(String json) {
+    try {
+      return objectMapper.readValue(json, PdfContext.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not bind the pdf context", e);
+    }
+  }
+
+  /**
+   * Creates the pdf context of a fixture as json
+   * @param fixture the fixture
+   * @return the json
+   */
+  public static JsonObject createJson(Fixture fixture) {
+    Random random = new Random(42);
+    FixtureBuilder builder = new FixtureBuilder(random);
+    switch (fixture) {
+      case SMALL:
+        builder.addLayout("page1", 10, 0, 0, 4);
+        break;
+      case LARGE_REPEATING_GROUP:
+        builder.addLayout("page1", 5, 500, 0, 4);
+        break;
+      case MULTI_PAGE:
+        for (int i = 1; i <= 10; i++) {
+          builder.addLayout("page" + i, 30, 0, 0, 60);
+        }
+        break;
+      case HUGE_CODELIST:
+        builder.addCodeList("municipalities", 20000);
+        builder.addLayout("page1", 5, 0, 20, 4);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown fixture " + fixture);
+    }
+    return builder.build();
+  }
+
+  private static class FixtureBuilder {
+    private final Random random;
+    private final JsonObject formLayouts = new JsonObject();
+    private final JsonArray order = new JsonArray();
+    private final JsonArray textResources = new JsonArray();
+    private final JsonObject optionsDictionary = new JsonObject();
+    private final StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><Skjema>");
+    private final List<String> codeListValues = new ArrayList<>();
+    private String codeListId;
+
+    private FixtureBuilder(Random random) {
+      this.random = random;
+      addTextResource("appName", "Søknad om tilskudd");
+    }
+
+    private void addCodeList(String id, int size) {
+      codeListId = id;
+      JsonObject options = new JsonObject();
+      for (int i = 0; i < size; i++) {
+        String value = String.format("%05d", i);
+        options.addProperty("option." + id + "." + i, value);
+        codeListValues.add(value);
+      }
+      optionsDictionary.add(id, options);
+    }
+
+    /**
+     * Adds a layout
+     * @param key the layout key
+     * @param fields the number of input fields
+     * @param rows the number of rows of a repeating group of four fields, none if 0
+     * @param optionFields the number of fields picking values from the code list
+     * @param words the number of words of the field values
+     */
+    private void addLayout(String key, int fields, int rows, int optionFields, int words) {
+      JsonArray layout = new JsonArray();
+      xml.append('<').append(key).append('>');
+      layout.add(createElement("Header", key + "-header", null, key + ".header"));
+      addTextResource(key + ".header", sentence(6));
+      layout.add(createElement("Paragraph", key + "-paragraph", null, key + ".paragraph"));
+      addTextResource(key + ".paragraph", sentence(40));
+      for (int i = 0; i < fields; i++) {
+        String id = key + "-field-" + i;
+        layout.add(createElement("Input", id, key + ".field" + i, id + ".title"));
+        addTextResource(id + ".title", sentence(5));
+        xml.append("<field").append(i).append('>').append(sentence(words)).append("</field").append(i).append('>');
+      }
+      for (int i = 0; i < optionFields; i++) {
+        String id = key + "-option-" + i;
+        boolean checkboxes = i % 2 == 1;
+        JsonObject element = createElement(checkboxes ? "Checkboxes" : "Dropdown", id, key + ".option" + i, id + ".title");
+        element.addProperty("optionsId", codeListId);
+        layout.add(element);
+        addTextResource(id + ".title", sentence(4));
+        String value = checkboxes
+          ? pickCode() + "," + pickCode() + "," + pickCode()
+          : pickCode();
+        xml.append("<option").append(i).append('>').append(value).append("</option").append(i).append('>');
+      }
+      if (rows > 0) {
+        JsonObject group = createElement("Group", key + "-group", null, key + ".group");
+        group.getAsJsonObject("dataModelBindings").addProperty("group", key + ".rows");
+        group.addProperty("maxCount", 999);
+        JsonArray children = new JsonArray();
+        for (int i = 0; i < 4; i++) {
+          String id = key + "-row-field-" + i;
+          children.add(id);
+          layout.add(createElement("Input", id, key + ".rows.cell" + i, id + ".title"));
+          addTextResource(id + ".title", sentence(3));
+        }
+        group.add("children", children);
+        layout.add(group);
+        addTextResource(key + ".group", sentence(4));
+        for (int row = 0; row < rows; row++) {
+          xml.append("<rows>");
+          for (int i = 0; i < 4; i++) {
+            xml.append("<cell").append(i).append('>').append(sentence(3)).append("</cell").append(i).append('>');
+          }
+          xml.append("</rows>");
+        }
+      }
+      xml.append("</").append(key).append('>');
+
+      JsonObject data = new JsonObject();
+      data.add("layout", layout);
+      JsonObject formLayout = new JsonObject();
+      formLayout.add("data", data);
+      formLayouts.add(key, formLayout);
+      order.add(key);
+    }
+
+    private JsonObject createElement(String type, String id, String binding, String titleKey) {
+      JsonObject element = new JsonObject();
+      element.addProperty("type", type);
+      element.addProperty("id", id);
+      JsonObject bindings = new JsonObject();
+      if (binding != null) {
+        bindings.addProperty("simpleBinding", binding);
+      }
+      element.add("dataModelBindings", bindings);
+      JsonObject textResourceBindings = new JsonObject();
+      textResourceBindings.addProperty("title", titleKey);
+      element.add("textResourceBindings", textResourceBindings);
+      return element;
+    }
+
+    private void addTextResource(String id, String value) {
+      JsonObject resource = new JsonObject();
+      resource.addProperty("id", id);
+      resource.addProperty("value", value);
+      textResources.add(resource);
+    }
+
+    private String pickCode() {
+      return codeListValues.get(random.nextInt(codeListValues.size()));
+    }
+
+    private String sentence(int words) {
+      StringBuilder sentence = new StringBuilder();
+      for (int i = 0; i < words; i++) {
+        if (i > 0) {
+          sentence.append(' ');
+        }
+        sentence.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      return sentence.toString();
+    }
+
+    private JsonObject build() {
+      JsonObject context = new JsonObject();
+      JsonObject resources = new JsonObject();
+      resources.addProperty("language", "nb");
+      resources.add("resources", textResources);
+      context.add("textResources", resources);
+      context.add("formLayouts", formLayouts);
+      JsonObject pages = new JsonObject();
+      pages.add("order", order);
+      JsonObject layoutSettings = new JsonObject();
+      layoutSettings.add("pages", pages);
+      context.add("layoutSettings", layoutSettings);
+      if (optionsDictionary.size() > 0) {
+        context.add("optionsDictionary", optionsDictionary);
+      }
+      String formData = xml.append("</Skjema>").toString();
+      context.addProperty("data", Base64.getEncoder().encodeToString(formData.getBytes(StandardCharsets.UTF_8)));
+
+      JsonObject instance = new JsonObject();
+      instance.addProperty("id", "50001234/6f0e1a54-4b6f-4f8b-9d3a-1a2b3c4d5e6f");
+      instance.addProperty("instanceOwnerId", "50001234");
+      instance.addProperty("appId", "ttd/benchmark");
+      instance.addProperty("org", "ttd");
+      instance.add("data", new JsonArray());
+      context.add("instance", instance);
+      JsonObject party = new JsonObject();
+      party.addProperty("partyId", 50001234);
+      party.addProperty("name", "Ola Nordmann");
+      context.add("party", party);
+      context.addProperty("language", "nb");
+      return context;
+    }
+  }
+}
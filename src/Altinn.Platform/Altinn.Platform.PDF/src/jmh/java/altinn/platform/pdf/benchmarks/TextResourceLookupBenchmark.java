@@ -0,0 +1,81 @@
+package altinn.platform.pdf.benchmarks;
+
+import altinn.platform.pdf.models.TextResourceElement;
+import altinn.platform.pdf.models.TextResources;
+import altinn.platform.pdf.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the indexed text resource lookup with the linear scan it replaced, for a growing number of text resources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextResourceLookupBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  private int resourceCount;
+
+  private TextResources textResources;
+  private String[] keys;
+  private int next;
+
+  @Setup
+  public void setup() {
+    List<TextResourceElement> resources = new ArrayList<>(resourceCount);
+    for (int i = 0; i < resourceCount; i++) {
+      TextResourceElement resource = new TextResourceElement();
+      resource.setId("component." + i + ".title");
+      resource.setValue("Title of component " + i);
+      resources.add(resource);
+    }
+    textResources = new TextResources();
+    textResources.setResources(resources);
+
+    // a mix of defined keys and keys falling back to the key itself
+    Random random = new Random(42);
+    keys = new String[1024];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "component." + random.nextInt(resourceCount + resourceCount / 10 + 1) + ".title";
+    }
+  }
+
+  @Benchmark
+  public String indexedLookup() {
+    return TextUtils.getTextResourceByKey(nextKey(), textResources);
+  }
+
+  @Benchmark
+  public String linearScan() {
+    String key = nextKey();
+    for (TextResourceElement resource : textResources.getResources()) {
+      if (resource.getId().equals(key)) {
+        return resource.getValue();
+      }
+    }
+    return key;
+  }
+
+  private String nextKey() {
+    next = (next + 1) & (keys.length - 1);
+    return keys[next];
+  }
+}
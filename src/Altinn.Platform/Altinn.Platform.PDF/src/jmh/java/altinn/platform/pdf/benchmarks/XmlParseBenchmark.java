@@ -0,0 +1,68 @@
+package altinn.platform.pdf.benchmarks;
+
+import altinn.platform.pdf.utils.FormDataIndex;
+import altinn.platform.pdf.utils.FormUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the form data through the shared streaming factory of {@link FormDataIndex} with creating a new
+ * hardened document builder factory and parsing a DOM for every request, as parseXml used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlParseBenchmark {
+
+  @Param({"1", "100"})
+  private int fieldCount;
+
+  private String xml;
+  private String base64Xml;
+
+  @Setup
+  public void setup() {
+    StringBuilder builder = new StringBuilder("<Skjema>");
+    for (int i = 0; i < fieldCount; i++) {
+      builder.append("<field-").append(i).append(">value ").append(i).append("</field-").append(i).append('>');
+    }
+    xml = builder.append("</Skjema>").toString();
+    base64Xml = Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public FormDataIndex sharedStreamingFactory() throws Exception {
+    return FormUtils.readFormData(base64Xml, null, value -> value);
+  }
+
+  @Benchmark
+  public Document newFactoryPerParse() throws Exception {
+    String decoded = new String(Base64.getDecoder().decode(base64Xml), StandardCharsets.UTF_8);
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+    return factory.newDocumentBuilder().parse(new InputSource(new StringReader(decoded)));
+  }
+}
@@ -5,6 +5,7 @@ import altinn.platform.pdf.configuration.KvSetting;
 import altinn.platform.pdf.health.HealthCheckTelemetryFilter;
 import altinn.platform.pdf.services.BasicLogger;
 import altinn.platform.pdf.utils.AltinnOrgUtils;
+import altinn.platform.pdf.utils.FontUtils;
 import altinn.platform.pdf.utils.TextUtils;
 import com.azure.identity.ClientSecretCredential;
 import com.azure.identity.ClientSecretCredentialBuilder;
@@ -32,6 +33,7 @@ public class App {
     AltinnOrgUtils.initAltinnOrgsHarvesting();
     try {
       TextUtils.initializeLanguages();
+      FontUtils.initializeFonts();
       connectToKeyVaultAndSetApplicationInsight();
     } catch (Exception e) {
       BasicLogger.log(Level.SEVERE, e.getMessage());
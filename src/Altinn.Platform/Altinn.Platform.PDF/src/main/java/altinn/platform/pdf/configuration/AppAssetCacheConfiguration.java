@@ -0,0 +1,29 @@
+package altinn.platform.pdf.configuration;
+
+import altinn.platform.pdf.utils.AppAssetCache;
+import altinn.platform.pdf.utils.AppAssetsKeyModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AppAssetCacheConfiguration {
+
+  /**
+   * The cache of the preprocessed layouts and text resources of the apps, shared by all pdf generations. A size of 0
+   * disables the cache.
+   */
+  @Bean
+  public AppAssetCache appAssetCache(@Value("${pdf.asset-cache.max-entries:64}") int maxEntries,
+                                     @Value("${pdf.asset-cache.max-bytes:67108864}") long maxBytes) {
+    return new AppAssetCache(maxEntries, maxBytes);
+  }
+
+  /**
+   * Keys the app level parts of the pdf contexts as the requests are bound, registered with the object mapper
+   */
+  @Bean
+  public AppAssetsKeyModule appAssetsKeyModule() {
+    return new AppAssetsKeyModule();
+  }
+}
@@ -0,0 +1,23 @@
+package altinn.platform.pdf.configuration;
+
+import altinn.platform.pdf.services.GenerationExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GenerationExecutorConfiguration {
+
+  /**
+   * The pool the pdfs are generated on, with a bounded queue and cost budget. 0 threads for the number of available
+   * processors.
+   */
+  @Bean
+  public GenerationExecutor generationExecutor(@Value("${pdf.generation.threads:0}") int threads,
+                                               @Value("${pdf.generation.queue-capacity:50}") int queueCapacity,
+                                               @Value("${pdf.generation.max-cost:268435456}") long maxCost,
+                                               @Value("${pdf.generation.retry-after-seconds:2}") long retryAfterSeconds) {
+    int poolSize = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    return new GenerationExecutor(poolSize, queueCapacity, maxCost, retryAfterSeconds);
+  }
+}
@@ -0,0 +1,41 @@
+package altinn.platform.pdf.configuration;
+
+import altinn.platform.pdf.services.GenerationExecutor;
+import altinn.platform.pdf.services.JobService;
+import altinn.platform.pdf.services.PdfResultStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class JobConfiguration {
+
+  /**
+   * Keeps the pdfs of the jobs, in memory and spilled to disk. The store spills to a pdf-jobs directory of its own in
+   * the spill directory, no spill directory for the temporary directory.
+   */
+  @Bean
+  public PdfResultStore pdfResultStore(@Value("${pdf.jobs.max-memory-bytes:134217728}") long maxMemoryBytes,
+                                       @Value("${pdf.jobs.max-disk-bytes:1073741824}") long maxDiskBytes,
+                                       @Value("${pdf.jobs.spill-directory:}") String spillDirectory) {
+    Path directory = spillDirectory.isEmpty()
+      ? Path.of(System.getProperty("java.io.tmpdir"))
+      : Path.of(spillDirectory);
+    return new PdfResultStore(maxMemoryBytes, maxDiskBytes, directory);
+  }
+
+  /**
+   * The asynchronous pdf generations, run on the generation pool
+   */
+  @Bean(destroyMethod = "shutdown")
+  public JobService jobService(GenerationExecutor generationExecutor, PdfResultStore pdfResultStore,
+                               @Value("${pdf.jobs.ttl-seconds:900}") long ttlSeconds,
+                               @Value("${pdf.jobs.max-jobs:1000}") int maxJobs,
+                               @Value("${pdf.jobs.eviction-interval-seconds:30}") long evictionIntervalSeconds) {
+    return new JobService(generationExecutor, pdfResultStore, Duration.ofSeconds(ttlSeconds), maxJobs,
+      Duration.ofSeconds(evictionIntervalSeconds));
+  }
+}
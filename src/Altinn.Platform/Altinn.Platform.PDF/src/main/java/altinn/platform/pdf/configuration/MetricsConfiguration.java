@@ -0,0 +1,41 @@
+package altinn.platform.pdf.configuration;
+
+import altinn.platform.pdf.services.GenerationExecutor;
+import altinn.platform.pdf.services.GenerationMetrics;
+import altinn.platform.pdf.utils.AppAssetCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+
+  /**
+   * The metrics of the pdf generations, published through the actuator metrics endpoint
+   */
+  @Bean
+  public GenerationMetrics generationMetrics(MeterRegistry meterRegistry, AppAssetCache appAssetCache, GenerationExecutor generationExecutor) {
+    GenerationMetrics metrics = new GenerationMetrics(meterRegistry);
+    metrics.monitor(appAssetCache);
+    metrics.monitor(generationExecutor);
+    return metrics;
+  }
+
+  /**
+   * Bounds the number of apps the generation meters are tagged with, the apps beyond the limit are not recorded
+   */
+  @Bean
+  public MeterFilter generationAppTagLimit(@Value("${pdf.metrics.max-apps:500}") int maxApps) {
+    return GenerationMetrics.limitTag(GenerationMetrics.TAG_APP, maxApps);
+  }
+
+  /**
+   * Bounds the number of orgs the generation meters are tagged with, the orgs beyond the limit are not recorded
+   */
+  @Bean
+  public MeterFilter generationOrgTagLimit(@Value("${pdf.metrics.max-orgs:100}") int maxOrgs) {
+    return GenerationMetrics.limitTag(GenerationMetrics.TAG_ORG, maxOrgs);
+  }
+}
@@ -0,0 +1,45 @@
+package altinn.platform.pdf.configuration;
+
+import altinn.platform.pdf.services.BasicLogger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Handles the requests on virtual threads when pdf.virtual-threads is enabled and the service runs on a JDK with virtual
+ * threads (21 or later). The request threads mostly wait on request bodies, responses and the generation pool, which
+ * costs a virtual thread next to nothing. The generations themselves stay on the generation pool, sized to the cores.
+ *
+ * The service is compiled for Java 17, so the virtual thread executor is looked up by reflection. On an older JDK the
+ * requests are handled by the platform threads of Tomcat, as without the setting.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pdf.virtual-threads", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    return protocolHandler -> {
+      if (executor != null) {
+        protocolHandler.setExecutor(executor);
+      }
+    };
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      BasicLogger.log(Level.INFO, "Requests are handled on virtual threads");
+      return executor;
+    } catch (ReflectiveOperationException e) {
+      BasicLogger.log(Level.WARNING, "Virtual threads are not supported by Java " + Runtime.version() + ", requests are handled on platform threads");
+      return null;
+    }
+  }
+}
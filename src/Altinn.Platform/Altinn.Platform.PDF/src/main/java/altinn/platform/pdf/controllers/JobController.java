@@ -0,0 +1,95 @@
+package altinn.platform.pdf.controllers;
+
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.PdfJob;
+import altinn.platform.pdf.services.BasicLogger;
+import altinn.platform.pdf.services.GenerationMetrics;
+import altinn.platform.pdf.services.GenerationRejectedException;
+import altinn.platform.pdf.services.JobService;
+import altinn.platform.pdf.services.PDFGenerator;
+import altinn.platform.pdf.utils.AppAssetCache;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
+import java.util.logging.Level;
+
+@RestController
+public class JobController {
+
+  /**
+   * When enabled the layouts of a pdf with several pages are laid out in parallel before they are drawn
+   */
+  @Value("${pdf.parallel-layouts:false}")
+  private boolean parallelLayouts;
+
+  @Autowired
+  private AppAssetCache appAssetCache;
+
+  @Autowired
+  private GenerationMetrics generationMetrics;
+
+  @Autowired
+  private JobService jobService;
+
+  @PostMapping("api/v1/jobs")
+  @Operation(summary = "Queues the generation of a receipt pdf, returning the job")
+  public ResponseEntity<PdfJob> submit(@RequestBody @Valid PdfContext pdfContext) {
+    PDFGenerator generator = new PDFGenerator(pdfContext);
+    generator.setParallelLayouts(parallelLayouts);
+    generator.setAssetCache(appAssetCache);
+    generator.setMetrics(generationMetrics);
+    try {
+      PdfJob job = jobService.submit(pdfContext, generator);
+      return ResponseEntity.accepted().location(URI.create("/api/v1/jobs/" + job.getId())).body(job);
+    } catch (GenerationRejectedException e) {
+      return ResponseEntity.status(e.getStatus())
+        .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+        .build();
+    }
+  }
+
+  @GetMapping("api/v1/jobs/{id}")
+  @Operation(summary = "Gets the status of a pdf job")
+  public ResponseEntity<PdfJob> getJob(@PathVariable String id) {
+    PdfJob job = jobService.getJob(id);
+    return (job != null) ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+  }
+
+  @GetMapping("api/v1/jobs/{id}/pdf")
+  @Operation(summary = "Gets the receipt pdf of a finished pdf job")
+  public void getPdf(@PathVariable String id, HttpServletResponse response) {
+    PdfJob job = jobService.getJob(id);
+    if (job == null) {
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    if (!JobService.STATUS_DONE.equals(job.getStatus())) {
+      response.setStatus(HttpStatus.CONFLICT.value());
+      return;
+    }
+    response.addHeader("Content-Type", "application/pdf");
+    response.addHeader("Content-Disposition", "attachment; filename=receipt.pdf");
+    response.setContentLengthLong(job.getSize());
+    try {
+      if (!jobService.writePdf(id, response.getOutputStream())) {
+        // evicted between the status check and the write
+        response.reset();
+        response.setStatus(HttpStatus.NOT_FOUND.value());
+      }
+    } catch (IOException e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
+    }
+  }
+}
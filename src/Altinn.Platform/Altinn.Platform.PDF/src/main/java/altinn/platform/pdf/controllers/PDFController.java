@@ -1,9 +1,20 @@
 package altinn.platform.pdf.controllers;
 
 import altinn.platform.pdf.services.PDFGenerator;
+import altinn.platform.pdf.services.PdfBatchGenerator;
 import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.PdfEstimate;
 import altinn.platform.pdf.services.BasicLogger;
+import altinn.platform.pdf.services.GenerationExecutor;
+import altinn.platform.pdf.services.GenerationMetrics;
+import altinn.platform.pdf.services.GenerationRejectedException;
+import altinn.platform.pdf.utils.AppAssetCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,25 +22,152 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 
 @RestController
 public class PDFController {
 
+  /**
+   * When enabled the pdf is written straight to the response as it is saved, using a chunked response without
+   * Content-Length. Otherwise the pdf is buffered in memory before it is written.
+   */
+  @Value("${pdf.stream-response:false}")
+  private boolean streamResponse;
+
+  /**
+   * When enabled the layouts of a pdf with several pages are laid out in parallel before they are drawn
+   */
+  @Value("${pdf.parallel-layouts:false}")
+  private boolean parallelLayouts;
+
+  /**
+   * The maximum number of pdfs of a batch generated at a time, 0 for the number of available processors
+   */
+  @Value("${pdf.batch-parallelism:0}")
+  private int batchParallelism;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Validator validator;
+
+  @Autowired
+  private AppAssetCache appAssetCache;
+
+  @Autowired
+  private GenerationMetrics generationMetrics;
+
+  @Autowired
+  private GenerationExecutor generationExecutor;
+
   @PostMapping("api/v1/generate")
   @Operation(summary = "Generates a receipt pdf")
   public void generate(HttpServletRequest request, HttpServletResponse response, @RequestBody @Valid PdfContext pdfContext) {
     PDFGenerator generator = new PDFGenerator(pdfContext);
+    generator.setParallelLayouts(parallelLayouts);
+    generator.setAssetCache(appAssetCache);
+    generator.setMetrics(generationMetrics);
     try {
-      ByteArrayOutputStream output = generator.generatePDF();
-      response.addHeader("Content-Type", "application/pdf");
-      response.addHeader("Content-Disposition", "attachment; filename=receipt.pdf");
-      response.getOutputStream().write(output.toByteArray());
+      if (streamResponse) {
+        // the headers are only added once the generation is admitted, a rejection answers with its own status
+        awaitGeneration(pdfContext, () -> {
+          addPdfHeaders(response);
+          generator.generatePDF(response.getOutputStream());
+          return null;
+        });
+      } else {
+        ByteArrayOutputStream output = awaitGeneration(pdfContext, generator::generatePDF);
+        addPdfHeaders(response);
+        response.setContentLength(output.size());
+        // writeTo avoids the extra copy made by toByteArray
+        output.writeTo(response.getOutputStream());
+      }
+    } catch (GenerationRejectedException e) {
+      response.setStatus(e.getStatus());
+      response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
     } catch (IOException e) {
       BasicLogger.log(Level.SEVERE, e.toString());
     }
   }
+
+  /**
+   * Runs a generation on the generation pool and waits for it. Exceptions thrown by the generation are rethrown as they
+   * would have been thrown on the request thread.
+   */
+  private <T> T awaitGeneration(PdfContext pdfContext, Callable<T> generation) throws IOException, GenerationRejectedException {
+    Future<T> future = generationExecutor.submit(GenerationExecutor.estimateCost(pdfContext), generation);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating pdf");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  @PostMapping(value = "api/v1/generate/batch", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+  @Operation(summary = "Generates the receipt pdfs of a json array or ndjson stream of pdf contexts, returned as a zip with a status.json entry")
+  public void generateBatch(HttpServletRequest request, HttpServletResponse response) {
+    int parallelism = (batchParallelism > 0) ? batchParallelism : Runtime.getRuntime().availableProcessors();
+    PdfBatchGenerator batchGenerator = new PdfBatchGenerator(objectMapper, validator, generationExecutor, parallelism);
+    batchGenerator.setParallelLayouts(parallelLayouts);
+    batchGenerator.setAssetCache(appAssetCache);
+    batchGenerator.setMetrics(generationMetrics);
+    try {
+      Iterator<Callable<PdfContext>> items = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+        ? PdfBatchGenerator.readNdjsonItems(objectMapper, request.getInputStream())
+        : PdfBatchGenerator.readJsonItems(objectMapper, request.getInputStream());
+      response.addHeader("Content-Type", "application/zip");
+      response.addHeader("Content-Disposition", "attachment; filename=receipts.zip");
+      batchGenerator.generate(items, response.getOutputStream());
+    } catch (IOException e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
+    }
+  }
+
+  @PostMapping("api/v1/estimate")
+  @Operation(summary = "Lays out a receipt pdf without generating it, returning its pages and the components on each")
+  public ResponseEntity<PdfEstimate> estimate(@RequestBody @Valid PdfContext pdfContext) {
+    PDFGenerator generator = new PDFGenerator(pdfContext);
+    generator.setParallelLayouts(parallelLayouts);
+    generator.setAssetCache(appAssetCache);
+    try {
+      // laying out is the cpu heavy half of a generation, it is admitted as one
+      return ResponseEntity.ok(awaitGeneration(pdfContext, generator::estimate));
+    } catch (GenerationRejectedException e) {
+      return ResponseEntity.status(e.getStatus())
+        .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+        .build();
+    } catch (IOException e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
+      return ResponseEntity.internalServerError().build();
+    }
+  }
+
+  private void addPdfHeaders(HttpServletResponse response) {
+    response.addHeader("Content-Type", "application/pdf");
+    response.addHeader("Content-Disposition", "attachment; filename=receipt.pdf");
+  }
 }
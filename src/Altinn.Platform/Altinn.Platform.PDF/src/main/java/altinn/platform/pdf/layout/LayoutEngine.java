@@ -0,0 +1,584 @@
+package altinn.platform.pdf.layout;
+
+import altinn.platform.pdf.models.*;
+import altinn.platform.pdf.utils.*;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.StandardStructureTypes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lays out the pdf of a pdf context into a {@link PagePlan}. Decides the page breaks and the position of every text and
+ * box from the metrics of the fonts, without embedding them or drawing anything, so the same plan can be drawn by the
+ * {@link altinn.platform.pdf.services.PDFGenerator} or only counted.
+ *
+ * The layouts are laid out as independent parts, each starting on a new page, so they can be laid out in parallel.
+ */
+public class LayoutEngine {
+
+  public static final float MARGIN = 50;
+  public static final float FONT_SIZE = 10;
+  public static final float HEADER_FONT_SIZE = 14;
+  public static final float LEADING = 1.2f * FONT_SIZE;
+  public static final float COMPONENT_MARGIN = 25;
+  public static final float TEXT_FIELD_MARGIN = 5;
+  private static final float LIST_INDENT = 10;
+
+  private static final List<String> componentsIgnoredFromGeneration = Arrays.asList(
+    "PrintButton",
+    "Button",
+    "Image",
+    "NavigationBar",
+    "NavigationButtons",
+    "Summary"
+  );
+
+  private final FontMetrics font;
+  private final FontMetrics fontBold;
+  private final FormDataIndex formData;
+  private final String language;
+  private final AppAssets assets;
+  private final TextResources textResources;
+  private final Instance instance;
+  private final FormLayout formLayout;
+  private final Map<String, FormLayout> formLayouts;
+  private final LayoutSettings layoutSettings;
+  private final Map<String, Map<String, String>> optionsDictionary;
+  private final float pageHeight = PDRectangle.A4.getHeight();
+  private final float width = PDRectangle.A4.getWidth() - 2 * MARGIN;
+  // wraps the header, the parts have caches of their own
+  private final TextLayoutCache textLayouts = new TextLayoutCache();
+
+  /**
+   * Creates the layout engine of a pdf, preprocessing the app level parts of the pdf context for this pdf only
+   * @param pdfContext the pdf context, with cleaned text resources
+   * @param formData the cleaned form data
+   * @param language the language of the pdf
+   * @param font the metrics of the regular font
+   * @param fontBold the metrics of the bold font
+   */
+  public LayoutEngine(PdfContext pdfContext, FormDataIndex formData, String language, FontMetrics font, FontMetrics fontBold) {
+    this(pdfContext, AppAssets.of(pdfContext, font), formData, language, font, fontBold);
+  }
+
+  /**
+   * Creates the layout engine of a pdf
+   * @param pdfContext the pdf context, with cleaned text resources
+   * @param assets the preprocessed app level parts of the pdf context, the layouts are laid out from these
+   * @param formData the cleaned form data
+   * @param language the language of the pdf
+   * @param font the metrics of the regular font
+   * @param fontBold the metrics of the bold font
+   */
+  public LayoutEngine(PdfContext pdfContext, AppAssets assets, FormDataIndex formData, String language, FontMetrics font, FontMetrics fontBold) {
+    this.font = font;
+    this.fontBold = fontBold;
+    this.formData = formData;
+    this.language = language;
+    this.assets = assets;
+    this.textResources = pdfContext.getTextResources();
+    this.instance = pdfContext.getInstance();
+    this.formLayout = assets.getFormLayout();
+    this.formLayouts = assets.getFormLayouts();
+    this.layoutSettings = assets.getLayoutSettings();
+    this.optionsDictionary = assets.getOptionsDictionary();
+  }
+
+  /**
+   * Lays out the pdf. The header and the submitted by text open the first page, followed by the included layouts.
+   * @param header the header text
+   * @param submittedBy the submitted by text, null to leave it out
+   * @param submittedByDetails the lines drawn after the submitted by text, not wrapped
+   * @param executor lays out the layouts in parallel when given, null to lay them out on the calling thread
+   * @return the page plan
+   * @throws IOException if a layout could not be laid out
+   */
+  public PagePlan plan(String header, String submittedBy, List<String> submittedByDetails, ExecutorService executor) throws IOException {
+    PagePlan.Page firstPage = new PagePlan.Page();
+    float y = pageHeight - MARGIN;
+    PlacedComponent headerComponent = placeHeader(header, y);
+    firstPage.add(headerComponent);
+    y -= headerComponent.getHeight();
+    if (submittedBy != null) {
+      PlacedComponent submittedByComponent = placeSubmittedBy(submittedBy, submittedByDetails, y);
+      firstPage.add(submittedByComponent);
+      y -= submittedByComponent.getHeight();
+    }
+
+    List<LayoutPart> parts = getLayoutParts();
+    List<List<PagePlan.Page>> partPages = (executor != null && parts.size() > 1)
+      ? planPartsInParallel(parts, y, executor)
+      : planParts(parts, y);
+
+    List<PagePlan.Page> pages = new ArrayList<>();
+    pages.add(firstPage);
+    for (int i = 0; i < partPages.size(); i++) {
+      List<PagePlan.Page> partPlan = partPages.get(i);
+      if (i == 0) {
+        // the first layout continues on the page of the header
+        partPlan.get(0).getComponents().forEach(firstPage::add);
+        pages.addAll(partPlan.subList(1, partPlan.size()));
+      } else {
+        pages.addAll(partPlan);
+      }
+    }
+    return new PagePlan(pages);
+  }
+
+  /**
+   * Collects the layouts to lay out, in the order they are laid out. Layouts excluded from the pdf are left out.
+   */
+  private List<LayoutPart> getLayoutParts() {
+    List<LayoutPart> parts = new ArrayList<>();
+    if (formLayout != null) {
+      // Older versions of our PlatformService nuget package we supplied only one form layout. Have to be backwards compatible here.
+      parts.add(new LayoutPart(formLayout));
+    } else if (formLayouts != null) {
+      // contains a map of form layouts. Render each page and separate by a new page
+      if (layoutSettings != null && layoutSettings.getPages() != null && layoutSettings.getPages().getOrder() != null && !layoutSettings.getPages().getOrder().isEmpty()) {
+        // The app developer has specified the order on a page => render pages in accordance
+        for (String layoutKey : layoutSettings.getPages().getOrder()) {
+          addLayoutPart(parts, layoutKey, formLayouts.get(layoutKey));
+        }
+      } else {
+        for (Map.Entry<String, FormLayout> formLayoutKeyValuePair : formLayouts.entrySet()) {
+          addLayoutPart(parts, formLayoutKeyValuePair.getKey(), formLayoutKeyValuePair.getValue());
+        }
+      }
+    }
+    return parts;
+  }
+
+  private void addLayoutPart(List<LayoutPart> parts, String layoutKey, FormLayout layout) {
+    if (LayoutUtils.includePageInPdf(layoutKey, layoutSettings, layout.getData().getLayout())) {
+      parts.add(new LayoutPart(layout));
+    }
+  }
+
+  private List<List<PagePlan.Page>> planParts(List<LayoutPart> parts, float firstPartY) {
+    List<List<PagePlan.Page>> partPages = new ArrayList<>(parts.size());
+    for (int i = 0; i < parts.size(); i++) {
+      partPages.add(planPart(parts.get(i), (i == 0) ? firstPartY : pageHeight - MARGIN));
+    }
+    return partPages;
+  }
+
+  private List<List<PagePlan.Page>> planPartsInParallel(List<LayoutPart> parts, float firstPartY, ExecutorService executor) throws IOException {
+    List<Future<List<PagePlan.Page>>> tasks = new ArrayList<>(parts.size());
+    for (int i = 0; i < parts.size(); i++) {
+      LayoutPart part = parts.get(i);
+      float y = (i == 0) ? firstPartY : pageHeight - MARGIN;
+      tasks.add(executor.submit(() -> planPart(part, y)));
+    }
+    List<List<PagePlan.Page>> partPages = new ArrayList<>(parts.size());
+    try {
+      for (Future<List<PagePlan.Page>> task : tasks) {
+        partPages.add(task.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while laying out the layouts");
+    } catch (ExecutionException e) {
+      tasks.forEach(task -> task.cancel(true));
+      throw new IOException(e.getCause());
+    }
+    return partPages;
+  }
+
+  /**
+   * Lays out a layout, starting at the given height of its first page. An element that does not fit on the rest of the
+   * page starts a new page.
+   */
+  private List<PagePlan.Page> planPart(LayoutPart part, float startY) {
+    part.setupRepeatingGroups(formData);
+    List<PagePlan.Page> pages = new ArrayList<>();
+    pages.add(new PagePlan.Page());
+    float[] y = { startY };
+    visitFormLayout(part, (element, componentId, context) -> {
+      if (componentsIgnoredFromGeneration.contains(element.getType())
+        || !LayoutUtils.includeComponentInPdf(element.getId(), layoutSettings)) {
+        return;
+      }
+      float elementHeight = LayoutUtils.getElementHeight(element, font, FONT_SIZE, width, LEADING, TEXT_FIELD_MARGIN, textResources, formData, instance, part.getTextLayouts(), context);
+      if ((y[0] - elementHeight) < (0 + MARGIN)) {
+        // the element would fall outside the page, we create new page and start from there
+        pages.add(new PagePlan.Page());
+        y[0] = pageHeight - MARGIN;
+      }
+      PlacedComponent component = placeElement(part, element, componentId, context, y[0]);
+      pages.get(pages.size() - 1).add(component);
+      y[0] -= component.getHeight();
+    });
+    return pages;
+  }
+
+  private PlacedComponent placeHeader(String header, float y) {
+    List<PlacedItem> items = new ArrayList<>(1);
+    float bottom = placeText(items, textLayouts, header, true, HEADER_FONT_SIZE, StandardStructureTypes.H1, y);
+    return new PlacedComponent("header", "header", false, true, y, y - bottom, items);
+  }
+
+  private PlacedComponent placeSubmittedBy(String submittedBy, List<String> details, float y) {
+    List<String> lines = new ArrayList<>(textLayouts.splitTextToLines(submittedBy, font, FONT_SIZE, width));
+    lines.addAll(details);
+    float bottom = y;
+    for (int i = 0; i < lines.size(); i++) {
+      bottom -= LEADING;
+    }
+    bottom -= COMPONENT_MARGIN;
+    PlacedText text = new PlacedText(MARGIN, y, Collections.unmodifiableList(lines), false, FONT_SIZE, LEADING, StandardStructureTypes.P);
+    return new PlacedComponent("submittedBy", "submittedBy", false, false, y, y - bottom, Collections.singletonList(text));
+  }
+
+  private PlacedComponent placeElement(LayoutPart part, FormLayoutElement element, String componentId, BindingContext context, float top) {
+    List<PlacedItem> items = new ArrayList<>();
+    TextLayoutCache cache = part.getTextLayouts();
+    float y = top;
+
+    String titleKey = element.getTextResourceBindings().getTitle();
+    if (titleKey != null && !titleKey.isEmpty()) {
+      String title = TextUtils.getTextResourceByKey(titleKey, textResources);
+      y = placeText(items, cache, title, true, FONT_SIZE, StandardStructureTypes.H2, y);
+    }
+
+    String descriptionKey = element.getTextResourceBindings().getDescription();
+    if (descriptionKey != null && !descriptionKey.isEmpty()) {
+      String description = TextUtils.getTextResourceByKey(descriptionKey, textResources);
+      y = placeText(items, cache, description, false, FONT_SIZE, StandardStructureTypes.P, y);
+    }
+
+    String elementType = element.getType();
+    if (elementType.equalsIgnoreCase("paragraph") || elementType.equalsIgnoreCase("header")) {
+      // has no content, and no margin
+      return new PlacedComponent(componentId, elementType, true, true, top, top - y, items);
+    }
+
+    if (elementType.equalsIgnoreCase("fileupload")) {
+      y = placeList(items, getFileLines(InstanceUtils.getAttachmentsByComponentId(element.getId(), instance)), y);
+    } else if (elementType.equalsIgnoreCase("fileuploadwithtag")) {
+      Map<String, List<String>> filesAndTags = InstanceUtils.getAttachmentsAndTagsByComponentId(element.getId(), instance);
+      y = placeList(items, getFileWithTagsLines(getFileTagDisplayValueFromOptions(element, filesAndTags)), y);
+    } else if (elementType.equalsIgnoreCase("attachmentlist")) {
+      List<String> files = new ArrayList<>();
+      for (String id : element.getDataTypeIds()) {
+        files.addAll(InstanceUtils.getAttachmentsByComponentId(id, instance));
+      }
+      y = placeList(items, getFileLines(files), y);
+    } else if (elementType.equalsIgnoreCase("AddressComponent")) {
+      y = placeAddressComponent(items, cache, element, context, y);
+    } else if (elementType.equalsIgnoreCase("Panel")) {
+      String bodyKey = element.getTextResourceBindings().getBody();
+      if (bodyKey != null && !bodyKey.isEmpty()) {
+        String body = TextUtils.getTextResourceByKey(bodyKey, textResources);
+        y = placeText(items, cache, body, false, FONT_SIZE, StandardStructureTypes.P, y);
+      }
+    } else {
+      // all other components rendered equally
+      String value;
+      if (element.getOptionsId() != null || element.getOptions() != null || element.getSource() != null) {
+        value = getDisplayValueFromOptions(part, element, context);
+      } else {
+        value = getFormData(element, "simpleBinding", context);
+      }
+      if (elementType.equalsIgnoreCase("Datepicker")) {
+        value = TextUtils.getDateFormat(value, language);
+      }
+      y = placeContent(items, cache, value, y);
+    }
+    y -= COMPONENT_MARGIN;
+    return new PlacedComponent(componentId, elementType, true, true, top, top - y, items);
+  }
+
+  private float placeAddressComponent(List<PlacedItem> items, TextLayoutCache cache, FormLayoutElement element, BindingContext context, float y) {
+    y = placeText(items, cache, getLanguageString("address"), false, FONT_SIZE, StandardStructureTypes.P, y);
+    y = placeContent(items, cache, getFormData(element, "address", context), y);
+    y -= COMPONENT_MARGIN;
+
+    y = placeText(items, cache, getLanguageString("zip_code"), false, FONT_SIZE, StandardStructureTypes.P, y);
+    y = placeContent(items, cache, getFormData(element, "zipCode", context), y);
+    y -= COMPONENT_MARGIN;
+
+    y = placeText(items, cache, getLanguageString("post_place"), false, FONT_SIZE, StandardStructureTypes.P, y);
+    y = placeContent(items, cache, getFormData(element, "postPlace", context), y);
+    y -= COMPONENT_MARGIN;
+
+    if (!element.isSimplified()) {
+      y = placeText(items, cache, getLanguageString("care_of"), false, FONT_SIZE, StandardStructureTypes.P, y);
+      y = placeText(items, cache, getLanguageString("house_number_helper"), false, FONT_SIZE, StandardStructureTypes.P, y);
+      y = placeContent(items, cache, getFormData(element, "careOf", context), y);
+      y -= COMPONENT_MARGIN;
+
+      y = placeText(items, cache, getLanguageString("house_number"), false, FONT_SIZE, StandardStructureTypes.P, y);
+      y = placeContent(items, cache, getFormData(element, "houseNumber", context), y);
+      y -= COMPONENT_MARGIN;
+    }
+    return y;
+  }
+
+  /**
+   * Places a wrapped text at the given height
+   * @return the height below the text
+   */
+  private float placeText(List<PlacedItem> items, TextLayoutCache cache, String text, boolean bold, float fontSize, String structureType, float y) {
+    List<String> lines = cache.splitTextToLines(text, bold ? fontBold : font, fontSize, width);
+    items.add(new PlacedText(MARGIN, y, lines, bold, fontSize, LEADING, structureType));
+    for (int i = 0; i < lines.size(); i++) {
+      y -= LEADING;
+    }
+    return y - TEXT_FIELD_MARGIN;
+  }
+
+  /**
+   * Places the value of an input field, in a box
+   * @return the height below the box
+   */
+  private float placeContent(List<PlacedItem> items, TextLayoutCache cache, String content, float y) {
+    float rectHeight = cache.getHeightNeededForTextBox(content, font, FONT_SIZE, width - 2 * TEXT_FIELD_MARGIN, LEADING);
+    float fontHeight = TextUtils.getFontHeight(font, FONT_SIZE);
+    items.add(new PlacedBox(MARGIN, y + fontHeight + 2, width, rectHeight));
+    y = placeText(items, cache, content, false, FONT_SIZE, StandardStructureTypes.P, y);
+    return y - (rectHeight + fontHeight);
+  }
+
+  /**
+   * Places an indented list, one line per entry
+   * @return the height below the list
+   */
+  private float placeList(List<PlacedItem> items, List<String> lines, float y) {
+    items.add(new PlacedText(MARGIN + LIST_INDENT, y, lines, false, FONT_SIZE, LEADING, StandardStructureTypes.P));
+    for (int i = 0; i < lines.size(); i++) {
+      y -= LEADING;
+    }
+    return y;
+  }
+
+  private List<String> getFileLines(List<String> files) {
+    List<String> lines = new ArrayList<>(files.size());
+    for (String file : files) {
+      lines.add("- " + TextUtils.removeIllegalChars(file, font));
+    }
+    return lines;
+  }
+
+  private List<String> getFileWithTagsLines(Map<String, List<String>> files) {
+    List<String> lines = new ArrayList<>(files.size());
+    for (Map.Entry<String, List<String>> file : files.entrySet()) {
+      List<String> tags = file.getValue();
+      StringBuilder line = new StringBuilder("- ").append(TextUtils.removeIllegalChars(file.getKey(), font)).append(" - ");
+      for (String tag : tags) {
+        line.append(tag);
+        if (tag != tags.get(tags.size() - 1)) {
+          line.append(", ");
+        }
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private String getDisplayValueFromOptions(LayoutPart part, FormLayoutElement element, BindingContext context) {
+    String value = getFormData(element, "simpleBinding", context);
+    List<String> splitFormData;
+    if (element.getType().equalsIgnoreCase("Checkboxes")) {
+      // checkboxes can have multiple values, need to fetch label for each one
+      splitFormData = Arrays.asList(value.split((",")));
+    } else {
+      // all other option components only have one selected value
+      splitFormData = new ArrayList<>();
+      splitFormData.add(value);
+    }
+
+    List<String> returnValues = new ArrayList<>();
+
+    if (element.getOptionsId() != null) {
+      if (optionsDictionary == null) {
+        return value;
+      }
+      Map<String, String> labelsByValue = assets.getInvertedOptions(element.getOptionsId());
+      splitFormData.forEach(formDataValue -> {
+          String label = MapUtils.getLabelFromValue(labelsByValue, formDataValue);
+          returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
+        }
+      );
+    } else if (element.getSource() != null) {
+      FormLayoutElement group =
+        part.getRepeatingGroups()
+          .stream()
+          .filter((FormLayoutElement e) -> e.getDataModelBindings().get("group").equals(element.getSource().getGroup()))
+          .findFirst()
+          .orElseThrow();
+      List<Option> optionList = OptionUtils.getOptionsFromOptionSource(element.getSource(), group, formData, textResources);
+      splitFormData.forEach(formDataValue -> {
+        var option = optionList.stream()
+          .filter(o -> o.getValue().equals(formDataValue))
+          .findFirst()
+          .orElse(null);
+        String label = (option != null) ? option.getLabel() : value;
+        returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
+      });
+    } else {
+      List<Option> optionList = element.getOptions();
+      splitFormData.forEach(formDataValue -> {
+          var option = optionList.stream()
+            .filter(o -> o.getValue().equals(formDataValue))
+            .findFirst()
+            .orElse(null);
+          String label = (option != null) ? option.getLabel() : value;
+          returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
+        }
+      );
+
+    }
+
+    return String.join(", ", returnValues);
+  }
+
+  private Map<String, List<String>> getFileTagDisplayValueFromOptions(FormLayoutElement element, Map<String, List<String>> files) {
+    Map<String, List<String>> returnValues = new HashMap<String, List<String>>();
+
+    if (element.getOptionsId() != null) {
+      if (optionsDictionary == null) {
+        return files;
+      }
+      Map<String, String> labelsByValue = assets.getInvertedOptions(element.getOptionsId());
+      files.forEach((name, tags) -> {
+          List<String> tmpTags = new ArrayList<>();
+          tags.forEach(tag -> {
+            String label = MapUtils.getLabelFromValue(labelsByValue, tag);
+            tmpTags.add(TextUtils.getTextResourceByKey(label, textResources));
+          });
+          returnValues.put(name, tmpTags);
+        }
+      );
+    } else {
+      List<Option> optionList = element.getOptions();
+      files.forEach((name, tags) -> {
+          List<String> tmpTags = new ArrayList<>();
+          tags.forEach(tag -> {
+            var option = optionList.stream()
+              .filter(o -> o.getValue().equals(tag))
+              .findFirst()
+              .orElse(null);
+            String label = (option != null) ? option.getLabel() : tag;
+            tmpTags.add(TextUtils.getTextResourceByKey(label, textResources));
+          });
+          returnValues.put(name, tmpTags);
+        }
+      );
+    }
+
+    return returnValues;
+  }
+
+  private String getFormData(FormLayoutElement element, String bindingKey, BindingContext context) {
+    return FormUtils.getFormDataByKey(context.resolve(element.getDataModelBindings().get(bindingKey)), formData);
+  }
+
+  private String getLanguageString(String key) {
+    return TextUtils.getLanguageStringByKey(key, language);
+  }
+
+  /**
+   * Walks the filtered layout of a part in the order it is drawn, with the repeating group row each element is drawn in
+   */
+  private void visitFormLayout(LayoutPart part, ElementVisitor visitor) {
+    for (FormLayoutElement element : assets.getFilteredLayout(part.getFormLayout())) {
+      String componentType = element.getType();
+      if (componentType.equalsIgnoreCase("group")) {
+        if (LayoutUtils.includeComponentInPdf(element.getId(), layoutSettings)) {
+          if (element.getDataModelBindings() == null || element.getDataModelBindings().get("group") == null) {
+            visitGroup(part, element, visitor);
+          } else {
+            visitRepeatingGroup(part, element, BindingContext.ROOT, visitor);
+          }
+        }
+      } else {
+        visitor.visit(element, element.getId(), BindingContext.ROOT);
+      }
+    }
+  }
+
+  private void visitGroup(LayoutPart part, FormLayoutElement element, ElementVisitor visitor) {
+    for (String childId : element.getChildren()) {
+      FormLayoutElement childElement = part.getFormLayout().getData().getElementById(childId);
+
+      if (childElement == null) {
+        continue;
+      }
+
+      if (childElement.getType().equalsIgnoreCase("group")) {
+        if (childElement.getDataModelBindings() == null || childElement.getDataModelBindings().get("group") == null) {
+          visitGroup(part, element, visitor);
+        } else {
+          visitRepeatingGroup(part, childElement, BindingContext.ROOT, visitor);
+        }
+      } else {
+        if (LayoutUtils.includeComponentInPdf(childElement.getId(), layoutSettings)) {
+          visitor.visit(childElement, childElement.getId(), BindingContext.ROOT);
+        }
+      }
+    }
+  }
+
+  /**
+   * Walks the rows of a repeating group
+   * @param part the layout the group belongs to
+   * @param element the repeating group
+   * @param context the row the group is nested in, or the root context
+   * @param visitor called for each component of each row
+   */
+  private void visitRepeatingGroup(LayoutPart part, FormLayoutElement element, BindingContext context, ElementVisitor visitor) {
+
+    // the rows of a nested group are counted within the row of its parent
+    String groupBinding = context.resolveGroupBinding(element.getDataModelBindings().get("group"));
+    int groupOccurrence=FormUtils.getGroupCount(groupBinding, this.formData);
+    BindingContext.Group group = context.forGroup(groupBinding);
+
+    for (int groupIndex = 0; groupIndex < groupOccurrence; groupIndex++) {
+
+      BindingContext rowContext = group.forRow(groupIndex);
+
+      for (String childId : element.getChildren()) {
+
+        if(element.getEdit() != null && element.getEdit().isMultiPage() && childId.contains(":")) {
+            childId = FormUtils.filterMultiPageId(childId);
+          }
+
+        FormLayoutElement childElement = part.getFormLayout().getData().getElementById(childId);
+
+        if (childElement == null) {
+          continue;
+        }
+
+        if (childElement.getType().equalsIgnoreCase("group")) {
+          if (childElement.getDataModelBindings() != null && childElement.getDataModelBindings().get("group") != null) {
+            visitRepeatingGroup(part, childElement, rowContext, visitor);
+          }
+          continue;
+        }
+
+        String rowComponentId = childElement.getId() + "-" + groupIndex;
+        if (LayoutUtils.includeComponentInPdf(rowComponentId, layoutSettings)) {
+          visitor.visit(childElement, rowComponentId, rowContext);
+        }
+      }
+    }
+  }
+
+  /**
+   * Called for each component of a layout, with the repeating group row it is drawn in
+   */
+  private interface ElementVisitor {
+    void visit(FormLayoutElement element, String componentId, BindingContext context);
+  }
+}
@@ -0,0 +1,40 @@
+package altinn.platform.pdf.layout;
+
+import altinn.platform.pdf.models.FormLayout;
+import altinn.platform.pdf.models.FormLayoutElement;
+import altinn.platform.pdf.utils.FormDataIndex;
+import altinn.platform.pdf.utils.FormUtils;
+import altinn.platform.pdf.utils.TextLayoutCache;
+
+import java.util.List;
+
+/**
+ * A layout of the pdf, with its repeating groups and the texts wrapped for it. Parts are laid out independently of each
+ * other, each starting on a new page, so they can be laid out on any thread.
+ */
+class LayoutPart {
+
+  private final FormLayout formLayout;
+  private final TextLayoutCache textLayouts = new TextLayoutCache();
+  private List<FormLayoutElement> repeatingGroups;
+
+  LayoutPart(FormLayout formLayout) {
+    this.formLayout = formLayout;
+  }
+
+  void setupRepeatingGroups(FormDataIndex formData) {
+    repeatingGroups = FormUtils.setupRepeatingGroups(formLayout.getData().getLayout(), formData);
+  }
+
+  FormLayout getFormLayout() {
+    return formLayout;
+  }
+
+  TextLayoutCache getTextLayouts() {
+    return textLayouts;
+  }
+
+  List<FormLayoutElement> getRepeatingGroups() {
+    return repeatingGroups;
+  }
+}
@@ -0,0 +1,51 @@
+package altinn.platform.pdf.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The pages of a pdf with the components placed on each, as decided by the {@link LayoutEngine}. Drawing the plan only
+ * has to follow it, all page breaks and positions are already known.
+ */
+public final class PagePlan {
+
+  private final List<Page> pages;
+
+  PagePlan(List<Page> pages) {
+    this.pages = Collections.unmodifiableList(pages);
+  }
+
+  /**
+   * @return the pages, in order
+   */
+  public List<Page> getPages() {
+    return pages;
+  }
+
+  public int getPageCount() {
+    return pages.size();
+  }
+
+  /**
+   * A page of the plan
+   */
+  public static final class Page {
+
+    private final List<PlacedComponent> components = new ArrayList<>();
+
+    Page() {
+    }
+
+    void add(PlacedComponent component) {
+      components.add(component);
+    }
+
+    /**
+     * @return the components on the page, top down
+     */
+    public List<PlacedComponent> getComponents() {
+      return Collections.unmodifiableList(components);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package altinn.platform.pdf.layout;
+
+/**
+ * The outline of an input field
+ */
+public final class PlacedBox extends PlacedItem {
+
+  private final float width;
+  private final float height;
+
+  PlacedBox(float x, float y, float width, float height) {
+    super(x, y);
+    this.width = width;
+    this.height = height;
+  }
+
+  public float getWidth() {
+    return width;
+  }
+
+  public float getHeight() {
+    return height;
+  }
+}
@@ -0,0 +1,77 @@
+package altinn.platform.pdf.layout;
+
+import java.util.List;
+
+/**
+ * A component of the layout, or the header of the pdf, placed on a page. Components inside repeating groups are placed
+ * once per row, with the row index appended to their id.
+ */
+public final class PlacedComponent {
+
+  private final String id;
+  private final String type;
+  private final boolean layoutComponent;
+  private final boolean newPart;
+  private final float y;
+  private final float height;
+  private final List<PlacedItem> items;
+
+  PlacedComponent(String id, String type, boolean layoutComponent, boolean newPart, float y, float height, List<PlacedItem> items) {
+    this.id = id;
+    this.type = type;
+    this.layoutComponent = layoutComponent;
+    this.newPart = newPart;
+    this.y = y;
+    this.height = height;
+    this.items = items;
+  }
+
+  /**
+   * @return the component id, e.g. "name" or "name-2" for the third row of a repeating group
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return the component type as defined in the layout, e.g. "Input", or the id of the header and submitted by text
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @return true for components of the layout, false for the header and submitted by text of the pdf
+   */
+  public boolean isLayoutComponent() {
+    return layoutComponent;
+  }
+
+  /**
+   * @return true if the component starts a new part of the structure tree, false if it continues the previous one
+   */
+  public boolean isNewPart() {
+    return newPart;
+  }
+
+  /**
+   * @return the top of the component
+   */
+  public float getY() {
+    return y;
+  }
+
+  /**
+   * @return the vertical space taken by the component, including the margin below it
+   */
+  public float getHeight() {
+    return height;
+  }
+
+  /**
+   * @return the texts and boxes of the component, in drawing order
+   */
+  public List<PlacedItem> getItems() {
+    return items;
+  }
+}
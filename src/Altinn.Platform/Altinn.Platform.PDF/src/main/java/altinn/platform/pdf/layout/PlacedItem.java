@@ -0,0 +1,30 @@
+package altinn.platform.pdf.layout;
+
+/**
+ * Something drawn on a page, positioned by the {@link LayoutEngine}. Coordinates are pdf user space, with y growing
+ * upwards from the bottom of the page.
+ */
+public abstract class PlacedItem {
+
+  private final float x;
+  private final float y;
+
+  PlacedItem(float x, float y) {
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * @return the left edge
+   */
+  public float getX() {
+    return x;
+  }
+
+  /**
+   * @return the baseline of the first line for texts, the top edge for boxes
+   */
+  public float getY() {
+    return y;
+  }
+}
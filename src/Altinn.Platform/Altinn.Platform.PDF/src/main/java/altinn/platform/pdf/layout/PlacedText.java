@@ -0,0 +1,56 @@
+package altinn.platform.pdf.layout;
+
+import java.util.List;
+
+/**
+ * A block of wrapped text lines, tagged as one structure element
+ */
+public final class PlacedText extends PlacedItem {
+
+  private final List<String> lines;
+  private final boolean bold;
+  private final float fontSize;
+  private final float leading;
+  private final String structureType;
+
+  PlacedText(float x, float y, List<String> lines, boolean bold, float fontSize, float leading, String structureType) {
+    super(x, y);
+    this.lines = lines;
+    this.bold = bold;
+    this.fontSize = fontSize;
+    this.leading = leading;
+    this.structureType = structureType;
+  }
+
+  /**
+   * @return the lines, drawn top down
+   */
+  public List<String> getLines() {
+    return lines;
+  }
+
+  /**
+   * @return true if the text is drawn with the bold font
+   */
+  public boolean isBold() {
+    return bold;
+  }
+
+  public float getFontSize() {
+    return fontSize;
+  }
+
+  /**
+   * @return the distance between the baselines of two lines
+   */
+  public float getLeading() {
+    return leading;
+  }
+
+  /**
+   * @return the standard structure type of the text, e.g. H2 for titles
+   */
+  public String getStructureType() {
+    return structureType;
+  }
+}
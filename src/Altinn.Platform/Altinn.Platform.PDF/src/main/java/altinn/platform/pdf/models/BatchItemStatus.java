@@ -0,0 +1,22 @@
+package altinn.platform.pdf.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+@Schema(description = "The outcome of an item of a batch generation")
+@Getter
+@Setter
+public class BatchItemStatus {
+  @Schema(description = "The position of the item in the batch, starting at 0")
+  private int index;
+
+  @Schema(description = "OK, INVALID if the item could not be read or failed validation, REJECTED if the service was saturated, or FAILED if generation failed")
+  private String status;
+
+  @Schema(description = "The name of the pdf in the zip, only set when the status is OK")
+  private String fileName;
+
+  @Schema(description = "Why the item was not generated")
+  private String message;
+}
@@ -1,11 +1,54 @@
 package altinn.platform.pdf.models;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FormLayoutData {
   private List<FormLayoutElement> layout;
+  private transient volatile ElementIndex index;
 
   public List<FormLayoutElement> getLayout() { return layout; }
 
-  public void setLayout(List<FormLayoutElement> layout) { this.layout = layout; }
+  public void setLayout(List<FormLayoutElement> layout) {
+    this.layout = layout;
+    this.index = null;
+  }
+
+  /**
+   * Gets a layout element by id. The elements are indexed on the first lookup, and re-indexed if the layout list is
+   * replaced or changes size.
+   * @param id the element id
+   * @return the first element with the given id, or null if not defined
+   */
+  public FormLayoutElement getElementById(String id) {
+    List<FormLayoutElement> current = layout;
+    if (current == null || id == null) {
+      return null;
+    }
+    ElementIndex currentIndex = index;
+    if (currentIndex == null || currentIndex.layout != current || currentIndex.size != current.size()) {
+      currentIndex = new ElementIndex(current);
+      index = currentIndex;
+    }
+    return currentIndex.byId.get(id);
+  }
+
+  private static class ElementIndex {
+    private final List<FormLayoutElement> layout;
+    private final int size;
+    private final Map<String, FormLayoutElement> byId;
+
+    private ElementIndex(List<FormLayoutElement> layout) {
+      this.layout = layout;
+      this.size = layout.size();
+      this.byId = new HashMap<>(layout.size() * 4 / 3 + 1);
+      for (FormLayoutElement element : layout) {
+        if (element != null && element.getId() != null) {
+          // keep the first occurrence, as the linear lookup did
+          byId.putIfAbsent(element.getId(), element);
+        }
+      }
+    }
+  }
 }
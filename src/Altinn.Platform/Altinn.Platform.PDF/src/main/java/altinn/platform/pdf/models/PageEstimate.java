@@ -0,0 +1,18 @@
+package altinn.platform.pdf.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema(description = "A page of an estimated pdf")
+@Getter
+@Setter
+public class PageEstimate {
+  @Schema(description = "The page number, starting at 1")
+  private int pageNumber;
+
+  @Schema(description = "The ids of the components on the page. Components in repeating groups have the row index appended, e.g. name-0")
+  private List<String> componentIds;
+}
@@ -1,5 +1,6 @@
 package altinn.platform.pdf.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import org.springframework.lang.Nullable;
 
@@ -55,6 +56,13 @@ public class PdfContext {
   @Nullable
   private LayoutSettings layoutSettings;
 
+  /**
+   * Set as the context is bound, never read from the request
+   */
+  @Schema(hidden = true)
+  @JsonIgnore
+  private transient String appAssetsKey;
+
   public Party getUserParty() { return userParty; }
 
   @Nullable
@@ -110,4 +118,14 @@ public class PdfContext {
 
     this.optionsDictionary = optionsDictionary;
   }
+
+  /**
+   * @return the key of the app level parts of the context, computed as the context was bound by a mapper with the
+   * AppAssetsKeyModule. Null if the context was created otherwise.
+   */
+  @JsonIgnore
+  public String getAppAssetsKey() { return appAssetsKey; }
+
+  @JsonIgnore
+  public void setAppAssetsKey(String appAssetsKey) { this.appAssetsKey = appAssetsKey; }
 }
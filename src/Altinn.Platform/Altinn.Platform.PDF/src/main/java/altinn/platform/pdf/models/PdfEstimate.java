@@ -0,0 +1,21 @@
+package altinn.platform.pdf.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Schema(description = "The pages a pdf would have, laid out without generating the pdf")
+@Getter
+@Setter
+public class PdfEstimate {
+  @Schema(description = "The number of pages")
+  private int pageCount;
+
+  @Schema(description = "The components on each page, in page order")
+  private List<PageEstimate> pages;
+
+  @Schema(description = "The time spent laying out the pdf, in milliseconds")
+  private long elapsedMilliseconds;
+}
@@ -0,0 +1,28 @@
+package altinn.platform.pdf.models;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+
+@Schema(description = "A pdf generated asynchronously")
+@Getter
+@Setter
+public class PdfJob {
+  @Schema(description = "The job id")
+  private String id;
+
+  @Schema(description = "QUEUED, RUNNING, DONE when the pdf can be fetched, or FAILED")
+  private String status;
+
+  @Schema(description = "When the job was submitted, ISO-8601")
+  private String created;
+
+  @Schema(description = "When the job and its pdf are removed, ISO-8601. Only set when the job has finished")
+  private String expires;
+
+  @Schema(description = "The size of the pdf in bytes, only set when the status is DONE")
+  private Long size;
+
+  @Schema(description = "Why the pdf was not generated")
+  private String message;
+}
@@ -2,18 +2,61 @@ package altinn.platform.pdf.models;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Schema(description = "The text resources json file.")
 public class TextResources {
   private List<TextResourceElement> resources;
   private String language;
+  private transient volatile ResourceIndex index;
 
   public List<TextResourceElement> getResources() { return resources; }
 
-  public void setResources(List<TextResourceElement> resources) { this.resources = resources; }
+  public void setResources(List<TextResourceElement> resources) {
+    this.resources = resources;
+    this.index = null;
+  }
 
   public String getLanguage() { return language; }
 
   public void setLanguage(String language) { this.language = language; }
+
+  /**
+   * Gets a text resource by id. The resources are indexed on the first lookup, and re-indexed if the resource list is
+   * replaced or changes size.
+   * @param id the text resource id
+   * @return the first text resource with the given id, or null if not defined
+   */
+  public TextResourceElement getResourceById(String id) {
+    List<TextResourceElement> current = resources;
+    if (current == null || id == null) {
+      return null;
+    }
+    ResourceIndex currentIndex = index;
+    if (currentIndex == null || currentIndex.resources != current || currentIndex.size != current.size()) {
+      currentIndex = new ResourceIndex(current);
+      index = currentIndex;
+    }
+    return currentIndex.byId.get(id);
+  }
+
+  private static class ResourceIndex {
+    private final List<TextResourceElement> resources;
+    private final int size;
+    private final Map<String, TextResourceElement> byId;
+
+    private ResourceIndex(List<TextResourceElement> resources) {
+      this.resources = resources;
+      this.size = resources.size();
+      this.byId = new HashMap<>(resources.size() * 4 / 3 + 1);
+      for (TextResourceElement resource : resources) {
+        if (resource != null && resource.getId() != null) {
+          // keep the first occurrence, as the linear lookup did
+          byId.putIfAbsent(resource.getId(), resource);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,168 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.FormLayout;
+import altinn.platform.pdf.models.PdfContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the pdf generations on a bounded pool, off the request threads. A generation is admitted if the queue has room
+ * and its estimated cost fits in the cost budget of the generations queued and running. Otherwise it is rejected with
+ * a {@link GenerationRejectedException}, so a burst of large pdfs is answered with a retry instead of exhausting the
+ * heap.
+ *
+ * The cost of a generation is an estimate of the memory it holds, see {@link #estimateCost(PdfContext)}. A generation
+ * costing more than the whole budget is admitted when nothing else is running, so it is never rejected for good.
+ */
+public class GenerationExecutor {
+
+  public static final int STATUS_SERVICE_UNAVAILABLE = 503;
+  public static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+  /**
+   * The estimated cost of each component of the layouts, the texts and boxes it is laid out into
+   */
+  private static final long COMPONENT_COST = 4096;
+
+  private final ThreadPoolExecutor pool;
+  private final long maxCost;
+  private final long retryAfterSeconds;
+  private final AtomicLong admittedCost = new AtomicLong();
+  private final AtomicLong rejectedQueueFullCount = new AtomicLong();
+  private final AtomicLong rejectedOverBudgetCount = new AtomicLong();
+
+  /**
+   * @param threads the number of generations run at a time
+   * @param queueCapacity the number of generations waiting for a thread
+   * @param maxCost the cost budget of the generations queued and running
+   * @param retryAfterSeconds the seconds a rejected client is asked to wait
+   */
+  public GenerationExecutor(int threads, int queueCapacity, long maxCost, long retryAfterSeconds) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+      task -> new Thread(task, "pdf-generation-" + threadCount.incrementAndGet()));
+    this.maxCost = maxCost;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Estimates the memory a generation holds: the form data and the laid out components of its layouts
+   * @param pdfContext the pdf context
+   * @return the cost
+   */
+  public static long estimateCost(PdfContext pdfContext) {
+    long cost = (pdfContext.getData() != null) ? pdfContext.getData().length() : 0;
+    long componentCount = countComponents(pdfContext.getFormLayout());
+    if (pdfContext.getFormLayouts() != null) {
+      for (FormLayout layout : pdfContext.getFormLayouts().values()) {
+        componentCount += countComponents(layout);
+      }
+    }
+    return cost + componentCount * COMPONENT_COST;
+  }
+
+  /**
+   * Submits a generation
+   * @param cost the estimated cost of the generation, see {@link #estimateCost(PdfContext)}
+   * @param task the generation
+   * @return the result of the generation
+   * @throws GenerationRejectedException if the queue is full or the cost does not fit in the budget
+   */
+  public <T> Future<T> submit(long cost, Callable<T> task) throws GenerationRejectedException {
+    long admitted;
+    do {
+      admitted = admittedCost.get();
+      if (admitted > 0 && admitted + cost > maxCost) {
+        rejectedOverBudgetCount.incrementAndGet();
+        throw new GenerationRejectedException("The cost of the pdfs being generated is at its limit", STATUS_TOO_MANY_REQUESTS, retryAfterSeconds);
+      }
+    } while (!admittedCost.compareAndSet(admitted, admitted + cost));
+    // the cost is released when the generation returns, before its result is visible, or when it is cancelled while queued
+    AtomicBoolean released = new AtomicBoolean();
+    Runnable release = () -> {
+      if (released.compareAndSet(false, true)) {
+        admittedCost.addAndGet(-cost);
+      }
+    };
+    FutureTask<T> future = new FutureTask<>(() -> {
+      try {
+        return task.call();
+      } finally {
+        release.run();
+      }
+    }) {
+      @Override
+      protected void done() {
+        release.run();
+      }
+    };
+    try {
+      pool.execute(future);
+      return future;
+    } catch (RejectedExecutionException e) {
+      release.run();
+      rejectedQueueFullCount.incrementAndGet();
+      throw new GenerationRejectedException("The generation queue is full", STATUS_SERVICE_UNAVAILABLE, retryAfterSeconds);
+    }
+  }
+
+  /**
+   * @return the seconds a rejected client is asked to wait
+   */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  /**
+   * @return the number of generations waiting for a thread
+   */
+  public int getQueueSize() {
+    return pool.getQueue().size();
+  }
+
+  /**
+   * @return the number of generations running
+   */
+  public int getActiveCount() {
+    return pool.getActiveCount();
+  }
+
+  /**
+   * @return the cost of the generations queued and running
+   */
+  public long getAdmittedCost() {
+    return admittedCost.get();
+  }
+
+  public long getRejectedQueueFullCount() {
+    return rejectedQueueFullCount.get();
+  }
+
+  public long getRejectedOverBudgetCount() {
+    return rejectedOverBudgetCount.get();
+  }
+
+  /**
+   * Stops accepting generations, the queued generations are still run
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  private static long countComponents(FormLayout layout) {
+    if (layout == null || layout.getData() == null || layout.getData().getLayout() == null) {
+      return 0;
+    }
+    return layout.getData().getLayout().size();
+  }
+}
@@ -0,0 +1,208 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.utils.AppAssetCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the duration of each phase of the pdf generations, tagged by the app and its org, and the size and page count
+ * of the generated pdfs. Durations are published with percentiles, so the phase taking the slowest generations can be
+ * found. The app and org come from the requests, the number of series they create is bounded by {@link #limitTag}.
+ */
+public class GenerationMetrics {
+
+  /**
+   * Records nothing, used by generations without metrics
+   */
+  public static final GenerationMetrics NONE = new GenerationMetrics(new CompositeMeterRegistry());
+
+  public static final String PHASE_FONTS = "fonts";
+  public static final String PHASE_ASSETS = "assets";
+  public static final String PHASE_FORM_DATA = "form-data";
+  public static final String PHASE_TEXT_RESOURCES = "text-resources";
+  public static final String PHASE_LAYOUT = "layout";
+  public static final String PHASE_RENDER = "render";
+  public static final String PHASE_SAVE = "save";
+
+  public static final String TAG_APP = "app";
+  public static final String TAG_ORG = "org";
+
+  private static final String METER_PREFIX = "pdf.generation";
+  private static final double[] PERCENTILES = { 0.5, 0.95, 0.99 };
+
+  private final MeterRegistry registry;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /**
+   * @param registry the registry the meters are registered in
+   */
+  public GenerationMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    Gauge.builder("pdf.generation.in.flight", inFlight, AtomicInteger::get)
+      .description("The number of pdfs being generated")
+      .register(registry);
+  }
+
+  /**
+   * Publishes the state of an app asset cache
+   * @param cache the cache
+   */
+  public void monitor(AppAssetCache cache) {
+    Gauge.builder("pdf.asset.cache.size", cache, AppAssetCache::size)
+      .description("The number of apps with cached assets")
+      .register(registry);
+    Gauge.builder("pdf.asset.cache.weight", cache, AppAssetCache::getWeight)
+      .description("The approximate size of the cached assets")
+      .baseUnit("bytes")
+      .register(registry);
+    FunctionCounter.builder("pdf.asset.cache.requests", cache, AppAssetCache::getHitCount)
+      .tag("result", "hit")
+      .register(registry);
+    FunctionCounter.builder("pdf.asset.cache.requests", cache, AppAssetCache::getMissCount)
+      .tag("result", "miss")
+      .register(registry);
+    FunctionCounter.builder("pdf.asset.cache.evictions", cache, AppAssetCache::getEvictionCount)
+      .register(registry);
+  }
+
+  /**
+   * Publishes the queue of a generation executor
+   * @param executor the executor
+   */
+  public void monitor(GenerationExecutor executor) {
+    Gauge.builder("pdf.generation.queue.size", executor, GenerationExecutor::getQueueSize)
+      .description("The number of generations waiting for a thread")
+      .register(registry);
+    Gauge.builder("pdf.generation.active", executor, GenerationExecutor::getActiveCount)
+      .description("The number of generations running on the generation pool")
+      .register(registry);
+    Gauge.builder("pdf.generation.admitted.cost", executor, GenerationExecutor::getAdmittedCost)
+      .description("The estimated cost of the generations queued and running")
+      .baseUnit("bytes")
+      .register(registry);
+    FunctionCounter.builder("pdf.generation.rejected", executor, GenerationExecutor::getRejectedQueueFullCount)
+      .tag("reason", "queue-full")
+      .register(registry);
+    FunctionCounter.builder("pdf.generation.rejected", executor, GenerationExecutor::getRejectedOverBudgetCount)
+      .tag("reason", "over-budget")
+      .register(registry);
+  }
+
+  /**
+   * Starts recording a generation. The generation is in flight until it is closed.
+   * @param pdfContext the pdf context of the generation
+   * @return the generation
+   */
+  public Generation start(PdfContext pdfContext) {
+    return new Generation(getTags(pdfContext));
+  }
+
+  /**
+   * Limits the number of values of a tag of the generation meters. Meters of a value beyond the limit are not
+   * registered, so a client sending made up apps can not grow the number of series without bound.
+   * @param tagKey the tag, {@link #TAG_APP} or {@link #TAG_ORG}
+   * @param maxValues the maximum number of values
+   * @return the filter, to be configured on the registry before the meters are registered
+   */
+  public static MeterFilter limitTag(String tagKey, int maxValues) {
+    return MeterFilter.maximumAllowableTags(METER_PREFIX, tagKey, maxValues, MeterFilter.deny());
+  }
+
+  private static Tags getTags(PdfContext pdfContext) {
+    Instance instance = pdfContext.getInstance();
+    return Tags.of(
+      TAG_APP, (instance != null && instance.getAppId() != null) ? instance.getAppId() : "unknown",
+      TAG_ORG, (instance != null && instance.getOrg() != null) ? instance.getOrg() : "unknown");
+  }
+
+  /**
+   * The metrics of one generation. Not thread safe, a generation is recorded by the thread generating the pdf.
+   */
+  public class Generation implements AutoCloseable {
+    private final Tags tags;
+    private final long start = System.nanoTime();
+    private final Map<String, long[]> renderNanos = new HashMap<>();
+    private boolean closed;
+
+    private Generation(Tags tags) {
+      this.tags = tags;
+      inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a phase of the generation
+     * @param phase the phase
+     * @param phaseStart the {@link System#nanoTime()} the phase started at
+     */
+    public void recordPhase(String phase, long phaseStart) {
+      timer("pdf.generation.phase", "The duration of a phase of the pdf generation", Tags.of("phase", phase))
+        .record(System.nanoTime() - phaseStart, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the time spent rendering a component, the time per component type is recorded when the generation is closed
+     * @param type the component type
+     * @param nanos the time spent
+     */
+    public void addRender(String type, long nanos) {
+      renderNanos.computeIfAbsent(type, t -> new long[1])[0] += nanos;
+    }
+
+    /**
+     * Records the generated pdf
+     * @param bytes the size of the pdf
+     * @param pages the number of pages
+     */
+    public void recordPdf(long bytes, int pages) {
+      DistributionSummary.builder("pdf.generation.size")
+        .description("The size of the generated pdfs")
+        .baseUnit("bytes")
+        .tags(tags)
+        .publishPercentiles(PERCENTILES)
+        .register(registry)
+        .record(bytes);
+      DistributionSummary.builder("pdf.generation.pages")
+        .description("The number of pages of the generated pdfs")
+        .tags(tags)
+        .publishPercentiles(PERCENTILES)
+        .register(registry)
+        .record(pages);
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      renderNanos.forEach((type, nanos) ->
+        timer("pdf.generation.render", "The time spent rendering the components of a type in a pdf", Tags.of("type", type))
+          .record(nanos[0], TimeUnit.NANOSECONDS));
+      timer("pdf.generation.duration", "The duration of the pdf generation", Tags.empty())
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      inFlight.decrementAndGet();
+    }
+
+    private Timer timer(String name, String description, Tags extraTags) {
+      return Timer.builder(name)
+        .description(description)
+        .tags(tags)
+        .tags(extraTags)
+        .publishPercentiles(PERCENTILES)
+        .register(registry);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package altinn.platform.pdf.services;
+
+/**
+ * Thrown when a pdf generation is not admitted because the service is saturated. The client should retry after the
+ * given number of seconds.
+ */
+public class GenerationRejectedException extends Exception {
+
+  private final int status;
+  private final long retryAfterSeconds;
+
+  /**
+   * @param message the reason the generation was rejected
+   * @param status the http status the rejection is answered with
+   * @param retryAfterSeconds the seconds the client should wait before retrying
+   */
+  public GenerationRejectedException(String message, int status, long retryAfterSeconds) {
+    super(message);
+    this.status = status;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
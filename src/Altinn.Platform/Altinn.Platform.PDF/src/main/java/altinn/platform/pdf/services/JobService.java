@@ -0,0 +1,240 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.PdfJob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Generates pdfs asynchronously. A submitted job is generated on the {@link GenerationExecutor}, and its pdf is kept in
+ * the {@link PdfResultStore} until the job expires, so it can be fetched again if a download fails. Finished jobs are
+ * removed with their pdfs when their time to live has passed, checked periodically. The number of jobs kept is bounded,
+ * a submit is rejected when it is reached.
+ */
+public class JobService {
+
+  public static final String STATUS_QUEUED = "QUEUED";
+  public static final String STATUS_RUNNING = "RUNNING";
+  public static final String STATUS_DONE = "DONE";
+  public static final String STATUS_FAILED = "FAILED";
+
+  private final GenerationExecutor executor;
+  private final PdfResultStore store;
+  private final Duration timeToLive;
+  private final int maxJobs;
+  private final Duration evictionInterval;
+  private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+  private final AtomicInteger jobCount = new AtomicInteger();
+  private final ScheduledExecutorService evictor;
+
+  /**
+   * @param executor generates the pdfs
+   * @param store keeps the generated pdfs
+   * @param timeToLive how long a finished job and its pdf are kept
+   * @param maxJobs the maximum number of jobs kept, queued, running or finished
+   * @param evictionInterval how often expired jobs are removed, no periodic removal if zero
+   */
+  public JobService(GenerationExecutor executor, PdfResultStore store, Duration timeToLive, int maxJobs, Duration evictionInterval) {
+    this.executor = executor;
+    this.store = store;
+    this.timeToLive = timeToLive;
+    this.maxJobs = maxJobs;
+    this.evictionInterval = evictionInterval;
+    if (evictionInterval.isZero()) {
+      this.evictor = null;
+    } else {
+      this.evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "pdf-job-eviction");
+        thread.setDaemon(true);
+        return thread;
+      });
+      evictor.scheduleAtFixedRate(this::evictExpired, evictionInterval.toMillis(), evictionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Submits a job generating a pdf
+   * @param pdfContext the pdf context
+   * @param generator the generator of the pdf context
+   * @return the queued job
+   * @throws GenerationRejectedException if the service is saturated or keeps too many jobs
+   */
+  public PdfJob submit(PdfContext pdfContext, PDFGenerator generator) throws GenerationRejectedException {
+    if (!reserveJob()) {
+      throw new GenerationRejectedException("Too many jobs are kept", GenerationExecutor.STATUS_SERVICE_UNAVAILABLE, getRetryAfterSeconds());
+    }
+    Job job = new Job(UUID.randomUUID().toString());
+    jobs.put(job.id, job);
+    try {
+      executor.submit(GenerationExecutor.estimateCost(pdfContext), () -> {
+        generate(job, generator);
+        return null;
+      });
+    } catch (GenerationRejectedException e) {
+      jobs.remove(job.id);
+      jobCount.decrementAndGet();
+      throw e;
+    }
+    return job.toPdfJob();
+  }
+
+  /**
+   * Gets a job
+   * @param id the job id
+   * @return the job, null if there is no such job or it has expired
+   */
+  public PdfJob getJob(String id) {
+    Job job = jobs.get(id);
+    return (job != null) ? job.toPdfJob() : null;
+  }
+
+  /**
+   * Writes the pdf of a finished job. The pdf is kept until the job expires.
+   * @param id the job id
+   * @param output the stream the pdf is written to
+   * @return false if the job has no pdf
+   * @throws IOException if the pdf could not be written
+   */
+  public boolean writePdf(String id, OutputStream output) throws IOException {
+    Job job = jobs.get(id);
+    if (job == null || !STATUS_DONE.equals(job.status)) {
+      return false;
+    }
+    return store.write(id, output);
+  }
+
+  /**
+   * Removes the finished jobs whose time to live has passed, with their pdfs
+   * @return the number of jobs removed
+   */
+  public int evictExpired() {
+    Instant now = Instant.now();
+    int evicted = 0;
+    for (Job job : jobs.values()) {
+      Instant expires = job.expires;
+      if (expires != null && !expires.isAfter(now) && jobs.remove(job.id, job)) {
+        store.remove(job.id);
+        jobCount.decrementAndGet();
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * @return the number of jobs kept
+   */
+  public int getJobCount() {
+    return jobCount.get();
+  }
+
+  /**
+   * Stops the periodic eviction and removes all jobs, deleting the pdfs spilled to disk
+   */
+  public void shutdown() {
+    if (evictor != null) {
+      evictor.shutdown();
+    }
+    jobs.clear();
+    store.close();
+  }
+
+  /**
+   * The seconds until a job slot is expected to be freed: when the next finished job expires and the eviction after it
+   * has run. If no job has finished yet, the generation pool's retry after is used.
+   */
+  private long getRetryAfterSeconds() {
+    Instant nextExpiry = null;
+    for (Job job : jobs.values()) {
+      Instant expires = job.expires;
+      if (expires != null && (nextExpiry == null || expires.isBefore(nextExpiry))) {
+        nextExpiry = expires;
+      }
+    }
+    if (nextExpiry == null) {
+      return executor.getRetryAfterSeconds();
+    }
+    Duration wait = Duration.between(Instant.now(), nextExpiry).plus(evictionInterval);
+    // rounded up to whole seconds
+    return Math.max(1, (wait.toMillis() + 999) / 1000);
+  }
+
+  /**
+   * Reserves a job slot, the slot is released when the job is evicted or rejected
+   */
+  private boolean reserveJob() {
+    while (true) {
+      int count = jobCount.get();
+      if (count >= maxJobs) {
+        return false;
+      }
+      if (jobCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void generate(Job job, PDFGenerator generator) {
+    job.status = STATUS_RUNNING;
+    try {
+      ByteArrayOutputStream pdf = generator.generatePDF();
+      if (store.put(job.id, pdf)) {
+        job.size = (long) pdf.size();
+        job.finish(STATUS_DONE, null);
+      } else {
+        job.finish(STATUS_FAILED, "The pdf is too large to be kept");
+      }
+    } catch (Exception e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
+      job.finish(STATUS_FAILED, e.toString());
+    } finally {
+      // errors such as OutOfMemoryError are rethrown, the job still fails so it expires and frees its slot
+      if (job.expires == null) {
+        job.finish(STATUS_FAILED, "The pdf could not be generated");
+      }
+    }
+  }
+
+  private class Job {
+    private final String id;
+    private final Instant created = Instant.now();
+    private volatile String status = STATUS_QUEUED;
+    private volatile Instant expires;
+    private volatile Long size;
+    private volatile String message;
+
+    private Job(String id) {
+      this.id = id;
+    }
+
+    private void finish(String finalStatus, String finalMessage) {
+      message = finalMessage;
+      expires = Instant.now().plus(timeToLive);
+      status = finalStatus;
+    }
+
+    private PdfJob toPdfJob() {
+      PdfJob pdfJob = new PdfJob();
+      pdfJob.setId(id);
+      pdfJob.setStatus(status);
+      pdfJob.setCreated(created.toString());
+      Instant currentExpires = expires;
+      pdfJob.setExpires((currentExpires != null) ? currentExpires.toString() : null);
+      pdfJob.setSize(size);
+      pdfJob.setMessage(message);
+      return pdfJob;
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package altinn.platform.pdf.services;
 
+import altinn.platform.pdf.layout.*;
 import altinn.platform.pdf.models.*;
 import altinn.platform.pdf.utils.*;
+import altinn.platform.pdf.utils.FontMetrics;
 
 import com.microsoft.applicationinsights.core.dependencies.apachecommons.lang3.StringUtils;
 import org.apache.pdfbox.cos.COSDictionary;
@@ -20,45 +22,37 @@ import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocume
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.viewerpreferences.PDViewerPreferences;
-import org.apache.tomcat.util.codec.binary.Base64;
-import org.w3c.dom.Document;
 
 import java.awt.*;
 import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.time.ZonedDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 public class PDFGenerator {
+  // lays out the layouts of a pdf in parallel, shared by all generations and sized to the available processors
+  private static final ExecutorService layoutPool = Executors.newWorkStealingPool();
+
   private PDDocument document;
   private PDAcroForm form;
-  private float width;
-  private float yPoint;
-  private float xPoint;
-  private float componentMargin = 25;
-  private float textFieldMargin = 5;
-  private float fontSize = 10;
-  private float headerFontSize = 14;
-  private float leading = 1.2f * fontSize;
-  private float margin = 50;
+  private final PdfContext pdfContext;
   private PDType0Font font;
   private PDType0Font fontBold;
   private TextResources textResources;
   private String data;
   private Instance instance;
-  private Document formData;
-  private FormLayout originalFormLayout;
-  private LayoutSettings layoutSettings;
-  private Map<String, FormLayout> formLayouts;
-  private Map<String, Map<String, String>> optionsDictionary;
-  private List<FormLayoutElement> repeatingGroups;
+  private FormDataIndex formData;
   private Party party;
   private Party userParty;
   private UserProfile userProfile;
@@ -67,40 +61,56 @@ public class PDFGenerator {
   private PDPageContentStream currentContent;
   private PDDocumentOutline outline;
   private PDOutlineItem pagesOutline;
-  private ByteArrayOutputStream output;
   private COSDictionary currentMarkedContentDictionary;
   private int mcid = 1;
+  private boolean parallelLayouts;
+  private AppAssetCache assetCache;
+  private AppAssets assets;
+  private GenerationMetrics metrics = GenerationMetrics.NONE;
   private PDStructureElement currentPart;
   private PDStructureElement currentSection;
-  private List<String> componentsIgnoredFromGeneration = Arrays.asList(
-    "PrintButton",
-    "Button",
-    "Image",
-    "NavigationBar",
-    "NavigationButtons",
-    "Summary"
-  );
 
   /**
    * Constructor for the AltinnPDFGenerator object
    */
   public PDFGenerator(PdfContext pdfContext) {
-    this.document = new PDDocument();
-    this.form = new PDAcroForm(this.document);
-    this.outline = new PDDocumentOutline();
-    this.pagesOutline = new PDOutlineItem();
-    this.originalFormLayout = pdfContext.getFormLayout();
-    this.formLayouts = pdfContext.getFormLayouts();
-    this.optionsDictionary = pdfContext.getOptionsDictionary();
+    this.pdfContext = pdfContext;
     this.data = pdfContext.getData();
     this.textResources = pdfContext.getTextResources();
     this.instance = pdfContext.getInstance();
-    this.output = new ByteArrayOutputStream();
     this.party = pdfContext.getParty();
     this.userParty = pdfContext.getUserParty();
     this.language = pdfContext.getLanguage();
     this.userProfile = pdfContext.getUserProfile();
-    this.layoutSettings = pdfContext.getLayoutSettings();
+  }
+
+  /**
+   * Enables laying out the layouts of the pdf in parallel before they are drawn. Drawing, bookmarks and the structure
+   * tree stay on the calling thread, in layout order.
+   *
+   * @param parallelLayouts true to lay out the layouts in parallel
+   */
+  public void setParallelLayouts(boolean parallelLayouts) {
+    this.parallelLayouts = parallelLayouts;
+  }
+
+  /**
+   * Sets the cache the preprocessed layouts and text resources of the app are shared through. Without a cache they are
+   * preprocessed for this pdf only.
+   *
+   * @param assetCache the cache, or null
+   */
+  public void setAssetCache(AppAssetCache assetCache) {
+    this.assetCache = assetCache;
+  }
+
+  /**
+   * Sets the metrics the phases of the generation are recorded in
+   *
+   * @param metrics the metrics
+   */
+  public void setMetrics(GenerationMetrics metrics) {
+    this.metrics = metrics;
   }
 
   /**
@@ -110,7 +120,30 @@ public class PDFGenerator {
    * @throws IOException
    */
   public ByteArrayOutputStream generatePDF() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    generatePDF(output);
+    return output;
+  }
+
+  /**
+   * Generates the pdf based on the pdf context and writes it to the given sink. The sink is closed when the document has
+   * been written.
+   *
+   * @param output the stream the generated pdf is written to
+   * @throws IOException
+   */
+  public void generatePDF(OutputStream output) throws IOException {
+    try (GenerationMetrics.Generation generation = metrics.start(pdfContext)) {
+      writePDF(output, generation);
+    }
+  }
+
+  private void writePDF(OutputStream output, GenerationMetrics.Generation generation) throws IOException {
     // General pdf setup
+    document = new PDDocument();
+    form = new PDAcroForm(document);
+    outline = new PDDocumentOutline();
+    pagesOutline = new PDOutlineItem();
     PDDocumentInformation info = new PDDocumentInformation();
     info.setCreationDate(Calendar.getInstance());
     info.setTitle(InstanceUtils.getInstanceName(instance));
@@ -121,19 +154,13 @@ public class PDFGenerator {
     catalog.setDocumentOutline((outline));
     PDResources resources = new PDResources();
 
-    font = PDType0Font.load(document, new FileInputStream("./classes/font/inter/Inter-Medium.ttf"), true);
-    fontBold = PDType0Font.load(document, new FileInputStream("./classes/font/inter/Inter-Bold.ttf"), true);
+    long phaseStart = System.nanoTime();
+    font = FontUtils.loadFont(document, FontUtils.INTER_MEDIUM);
+    fontBold = FontUtils.loadFont(document, FontUtils.INTER_BOLD);
     COSName fontCOSName = resources.add(font);
+    generation.recordPhase(GenerationMetrics.PHASE_FONTS, phaseStart);
 
-    data = new String(Base64.decodeBase64(data), StandardCharsets.UTF_8);
-    data = TextUtils.removeIllegalChars(data, font);
-
-    try {
-      formData = FormUtils.parseXml(data);
-      textResources.setResources(parseAndCleanTextResources(textResources.getResources(), formData, font));
-    } catch (Exception e) {
-      BasicLogger.log(Level.SEVERE, e.toString());
-    }
+    readFormData(FontMetrics.of(font), generation);
 
     form.setDefaultResources(resources);
     String defaultAppearance = "/" + fontCOSName.getName() + " 10 Tf 0 0 0 rg";
@@ -147,304 +174,155 @@ public class PDFGenerator {
     catalog.setStructureTreeRoot(new PDStructureTreeRoot());
     catalog.getStructureTreeRoot().setParentTree(new PDNumberTreeNode(PDParentTreeValue.class));
 
-    // creates a new page
-    createNewPage();
-    float pageWidth = currentPage.getMediaBox().getWidth();
-    float pageHeight = currentPage.getMediaBox().getHeight();
-    this.width = pageWidth - 2 * margin;
-
-    // sets background color
-    currentContent.setNonStrokingColor(Color.decode("#FFFFFF"));
-    currentContent.addRect(0, 0, pageWidth, pageHeight);
-    currentContent.fill();
-    currentContent.setNonStrokingColor(Color.black);
-
-    // init starting drawing points
-    float headerMargin = 25;
-    yPoint = pageHeight - headerMargin;
-    xPoint = margin;
-    yPoint = pageHeight - margin;
-
-    // draws header
-    renderHeader();
-
-    // draws submitted by
-    renderSubmittedBy();
-
-    boolean firstPage = true;
-    // Loop through all pdfLayout elements and draws them
-    if (originalFormLayout != null) {
-      // Older versions of our PlatformService nuget package we supplied only one form layout. Have to be backwards compatible here.
-      this.repeatingGroups = FormUtils.setupRepeatingGroups(this.originalFormLayout.getData().getLayout(), this.formData);
-      List<FormLayoutElement> filteredLayout = FormUtils.getFilteredLayout(this.originalFormLayout.getData().getLayout());
-      renderFormLayout(filteredLayout);
-    } else if (formLayouts != null) {
-      // contains a map of form layouts. Render each page and separate by a new page
-      if (layoutSettings != null && layoutSettings.getPages() != null && layoutSettings.getPages().getOrder() != null && !layoutSettings.getPages().getOrder().isEmpty()) {
-        // The app developer has specified the order on a page => render pages in accordance
-        List<String> order = layoutSettings.getPages().getOrder();
-        for (String layoutKey : order) {
-          FormLayout layout = formLayouts.get(layoutKey);
-          firstPage = checkLayoutAndRenderPage(firstPage, layoutKey, layout);
-        }
-      } else {
-        for (Map.Entry<String, FormLayout> formLayoutKeyValuePair : formLayouts.entrySet()) {
-          String layoutKey = formLayoutKeyValuePair.getKey();
-          FormLayout layout = formLayoutKeyValuePair.getValue();
-          firstPage = checkLayoutAndRenderPage(firstPage, layoutKey, layout);
-        }
+    // lays out the pages, then draws them
+    phaseStart = System.nanoTime();
+    PagePlan plan = planPages(FontMetrics.of(font), FontMetrics.of(fontBold));
+    generation.recordPhase(GenerationMetrics.PHASE_LAYOUT, phaseStart);
+
+    phaseStart = System.nanoTime();
+    for (PagePlan.Page page : plan.getPages()) {
+      createNewPage();
+      if (document.getNumberOfPages() == 1) {
+        // sets background color
+        float pageWidth = currentPage.getMediaBox().getWidth();
+        float pageHeight = currentPage.getMediaBox().getHeight();
+        currentContent.setNonStrokingColor(Color.decode("#FFFFFF"));
+        currentContent.addRect(0, 0, pageWidth, pageHeight);
+        currentContent.fill();
+        currentContent.setNonStrokingColor(Color.black);
+      }
+      for (PlacedComponent component : page.getComponents()) {
+        long componentStart = System.nanoTime();
+        renderComponent(component);
+        generation.addRender(component.getType(), System.nanoTime() - componentStart);
       }
     }
+    generation.recordPhase(GenerationMetrics.PHASE_RENDER, phaseStart);
 
     // close document and save
+    phaseStart = System.nanoTime();
     currentContent.close();
     document.getDocumentCatalog().getMarkInfo().setMarked(true);
-    document.save(output);
+    CountingOutputStream countingOutput = new CountingOutputStream(output);
+    document.save(countingOutput);
+    int pageCount = document.getNumberOfPages();
     document.close();
-    return output;
+    generation.recordPhase(GenerationMetrics.PHASE_SAVE, phaseStart);
+    generation.recordPdf(countingOutput.getCount(), pageCount);
   }
 
-  private boolean checkLayoutAndRenderPage(boolean firstPage, String layoutKey, FormLayout layout) throws IOException {
-    if (LayoutUtils.includePageInPdf(layoutKey, layoutSettings, layout.getData().getLayout())) {
-      if (!firstPage) {
-        createNewPage();
-        yPoint = currentPage.getMediaBox().getHeight() - margin;
-      }
-
-      originalFormLayout = layout;
-      this.repeatingGroups = FormUtils.setupRepeatingGroups(this.originalFormLayout.getData().getLayout(), this.formData);
-      List<FormLayoutElement> filteredLayout = FormUtils.getFilteredLayout(layout.getData().getLayout());
-      renderFormLayout(filteredLayout);
-      firstPage = false;
+  /**
+   * Lays out the pdf based on the pdf context without generating it. The fonts are measured from their font programs, no
+   * font is embedded and no document is created.
+   *
+   * @return the pages the pdf would have, with the components on each
+   * @throws IOException if a font could not be read or a layout could not be laid out
+   */
+  public PdfEstimate estimate() throws IOException {
+    long start = System.nanoTime();
+    FontMetrics fontMetrics = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+    FontMetrics fontBoldMetrics = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_BOLD));
+    // an estimate is not a generation, its phases are not recorded
+    readFormData(fontMetrics, null);
+    PagePlan plan = planPages(fontMetrics, fontBoldMetrics);
+
+    List<PageEstimate> pages = new ArrayList<>(plan.getPageCount());
+    for (PagePlan.Page page : plan.getPages()) {
+      PageEstimate pageEstimate = new PageEstimate();
+      pageEstimate.setPageNumber(pages.size() + 1);
+      pageEstimate.setComponentIds(page.getComponents().stream()
+        .filter(PlacedComponent::isLayoutComponent)
+        .map(PlacedComponent::getId)
+        .collect(Collectors.toList()));
+      pages.add(pageEstimate);
     }
-    return firstPage;
+    PdfEstimate estimate = new PdfEstimate();
+    estimate.setPageCount(plan.getPageCount());
+    estimate.setPages(pages);
+    estimate.setElapsedMilliseconds(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return estimate;
   }
 
-  private void renderFormLayout(List<FormLayoutElement> formLayout) throws IOException {
-    for (FormLayoutElement element : formLayout) {
-      String componentType = element.getType();
-      if (componentType.equalsIgnoreCase("group")) {
-        if (LayoutUtils.includeComponentInPdf(element.getId(), layoutSettings)) {
-          if (element.getDataModelBindings() == null || element.getDataModelBindings().get("group") == null) {
-            renderGroup(element);
-          } else {
-            renderRepeatingGroup(element, false);
-          }
-        }
-      } else {
-        renderLayoutElement(element);
-      }
+  /**
+   * Reads the app assets and the form data
+   * @param fontMetrics the font the values are cleaned for
+   * @param generation records the phases, null if they are not recorded
+   */
+  private void readFormData(FontMetrics fontMetrics, GenerationMetrics.Generation generation) {
+    // the app level parts are preprocessed once per app, only the instance data is read per pdf. A failure here fails
+    // the generation, the layouts can not be drawn without them
+    long phaseStart = System.nanoTime();
+    assets = (assetCache != null) ? assetCache.get(pdfContext, fontMetrics) : AppAssets.of(pdfContext, fontMetrics);
+    if (generation != null) {
+      generation.recordPhase(GenerationMetrics.PHASE_ASSETS, phaseStart);
     }
-  }
-
-  private void renderGroup(FormLayoutElement element) throws IOException {
-    for (String childId : element.getChildren()) {
-      FormLayoutElement childElement = originalFormLayout.getData().getLayout().stream().filter(formLayoutElement -> formLayoutElement.getId().equals(childId)).findFirst().orElse(null);
-
-      if (childElement == null) {
-        continue;
+    try {
+      // only the values referenced by the layouts and text resources are kept, cleaned as they are read. The data is
+      // decoded, parsed and cleaned in one pass, so they are recorded as one phase
+      phaseStart = System.nanoTime();
+      formData = FormUtils.readFormData(data, assets.getReferencedBindings(), value -> TextUtils.removeIllegalChars(value, fontMetrics));
+      data = null;
+      if (generation != null) {
+        generation.recordPhase(GenerationMetrics.PHASE_FORM_DATA, phaseStart);
       }
-
-      if (childElement.getType().equalsIgnoreCase("group")) {
-        if (childElement.getDataModelBindings() == null || childElement.getDataModelBindings().get("group") == null) {
-          renderGroup(element);
-        } else {
-          renderRepeatingGroup(childElement, false);
-        }
-      } else {
-        if (LayoutUtils.includeComponentInPdf(childElement.getId(), layoutSettings)) {
-          renderLayoutElement(childElement);
-        }
+      phaseStart = System.nanoTime();
+      textResources.setResources(assets.resolveTextResources(formData).getResources());
+      if (generation != null) {
+        generation.recordPhase(GenerationMetrics.PHASE_TEXT_RESOURCES, phaseStart);
       }
+    } catch (Exception e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
     }
   }
 
-  private void renderRepeatingGroup(FormLayoutElement element, boolean childGroup) throws IOException {
-
-    String groupBinding = element.getDataModelBindings().get("group");
-    int groupOccurrence=FormUtils.getGroupCount(groupBinding, this.formData);
-
-    for (int groupIndex = 0; groupIndex < element.getCount(); groupIndex++) {
-
-      if( groupIndex >= groupOccurrence) {
-         continue;
-      }
-
-      for (String childId : element.getChildren()) {
-
-        if(element.getEdit() != null && element.getEdit().isMultiPage() && childId.contains(":")) {
-            childId = FormUtils.filterMultiPageId(childId);
-          }
-
-        String finalChildId = childId;
-
-        FormLayoutElement childElement = originalFormLayout.getData().getLayout().stream().filter(formLayoutElement -> formLayoutElement.getId().equals(finalChildId)).findFirst().orElse(null);
-        HashMap<String, String> originalDataModelBindings = new HashMap<>();
-        if (childElement != null && childElement.getDataModelBindings() != null) {
-          childElement.getDataModelBindings().entrySet().forEach(stringStringEntry -> originalDataModelBindings.put(stringStringEntry.getKey(), stringStringEntry.getValue()));
-        }
-
-        if (childElement != null && childElement.getType().equalsIgnoreCase("group")) {
-          childElement = repeatingGroups.stream().filter(formLayoutElement -> formLayoutElement.getId().equals(finalChildId)).findFirst().orElse(null);
-
-          if (childElement == null) {
-            continue;
-          }
-
-          String currentDataModelGroupBinding = childElement.getDataModelBindings().get("group");
-
-          // cloning the child to not make changes to the original datamodelBinding
-          FormLayoutElement clonedChildElement =  (FormLayoutElement) childElement.clone();
-          clonedChildElement.getDataModelBindings().put("group", FormUtils.setGroupIndexForBinding(currentDataModelGroupBinding, groupBinding, groupIndex));
-
-
-          renderRepeatingGroup(clonedChildElement, true);
-
-          continue;
-        }
-
-        if (childElement == null) {
-          continue;
-        }
-
-        if (childElement.getDataModelBindings() != null && !childElement.getType().equalsIgnoreCase("group")) {
-          Map<String, String> dataBindings = childElement.getDataModelBindings();
-          for (Map.Entry<String, String> dataBinding : dataBindings.entrySet()) {
-            String currentBinding = dataBinding.getValue();
-            if (childGroup) {
-              int indexStart = groupBinding.indexOf("[");
-              int indexEnd = groupBinding.indexOf("]");
-              String nonIndexedGroupBinding = groupBinding.replace(groupBinding.substring(indexStart, indexEnd + 1), "");
-              currentBinding = currentBinding.replace(nonIndexedGroupBinding, groupBinding);
-            }
-            String replacedBinding = FormUtils.setGroupIndexForBinding(currentBinding, groupBinding, groupIndex);
-            dataBinding.setValue(replacedBinding);
-          }
-        }
-
-        if (!childElement.getType().equalsIgnoreCase("group")) {
-          if (LayoutUtils.includeComponentInPdf(childElement.getId() + "-" + groupIndex, layoutSettings)) {
-            renderLayoutElement(childElement);
-          }
-          childElement.setDataModelBindings(originalDataModelBindings);
-        }
-      }
-    }
+  private PagePlan planPages(FontMetrics fontMetrics, FontMetrics fontBoldMetrics) throws IOException {
+    String language = getLanguage();
+    LayoutEngine layoutEngine = new LayoutEngine(pdfContext, assets, formData, language, fontMetrics, fontBoldMetrics);
+    String header = TextUtils.getAppOwnerName(instance.getOrg(), language, textResources) + " - " + TextUtils.getAppName(textResources);
+    return layoutEngine.plan(header, getSubmittedBy(), getSubmittedByDetails(), parallelLayouts ? layoutPool : null);
   }
 
-  private void renderLayoutElement(FormLayoutElement element) throws IOException {
-    String componentType = element.getType();
-    String componentId = element.getId();
-    if (componentsIgnoredFromGeneration.contains(componentType)
-      || !LayoutUtils.includeComponentInPdf(componentId, layoutSettings)) {
-      return;
-    }
-    // Render title
-    float elementHeight = LayoutUtils.getElementHeight(element, font, fontSize, width, leading, textFieldMargin, textResources, formData, instance);
-    if ((yPoint - elementHeight) < (0 + margin)) {
-      // the element would fall outside the page, we create new page and start from there
-      createNewPage();
-      yPoint = currentPage.getMediaBox().getHeight() - margin;
-    }
-    addPart();
-
-    String titleKey = element.getTextResourceBindings().getTitle();
-    if (titleKey != null && !titleKey.isEmpty()) {
-      String title = TextUtils.getTextResourceByKey(titleKey, textResources);
-      renderText(title, fontBold, fontSize, StandardStructureTypes.H2);
-    }
-
-    // Render description
-    String descriptionKey = element.getTextResourceBindings().getDescription();
-    if (descriptionKey != null && !descriptionKey.isEmpty()) {
-      String description = TextUtils.getTextResourceByKey(descriptionKey, textResources);
-      renderText(description, font, fontSize, StandardStructureTypes.P);
-    }
-    String elementType = element.getType();
-    // Render content
-    if (elementType.equalsIgnoreCase("paragraph") || elementType.equalsIgnoreCase("header")) {
-      // has no content, ignore
-      return;
+  private void renderComponent(PlacedComponent component) throws IOException {
+    if (component.isNewPart()) {
+      addPart();
     }
-
-    if (elementType.equalsIgnoreCase("fileupload")) {
-      // different view for file upload
-      renderFileUploadContent(element);
-    } else if (elementType.equalsIgnoreCase("fileuploadwithtag")) {
-      // different view for file upload with tags
-      renderFileUploadWithTagsContent(element);
-    } else if (elementType.equalsIgnoreCase("attachmentlist")) {
-      // different view for attachment list
-      renderAttachmentListContent(element);
-    } else if (elementType.equalsIgnoreCase("AddressComponent")) {
-      renderAddressComponent(element);
-    } else if (elementType.equalsIgnoreCase("Panel")) {
-      renderPanelComponent(element);
-    } else {
-      // all other components rendered equally
-      renderLayoutElementContent(element);
-    }
-    yPoint -= componentMargin;
-  }
-
-  private void renderPanelComponent(FormLayoutElement element) throws IOException {
-    String bodyKey = element.getTextResourceBindings().getBody();
-    if (bodyKey != null && !bodyKey.isEmpty()) {
-      String description = TextUtils.getTextResourceByKey(bodyKey, textResources);
-      renderText(description, font, fontSize, StandardStructureTypes.P);
+    for (PlacedItem item : component.getItems()) {
+      if (item instanceof PlacedBox) {
+        PlacedBox box = (PlacedBox) item;
+        renderBox(box.getX(), box.getY(), box.getWidth(), box.getHeight());
+      } else if (StandardStructureTypes.H1.equals(((PlacedText) item).getStructureType())) {
+        renderHeader((PlacedText) item);
+      } else {
+        renderText((PlacedText) item);
+      }
     }
   }
 
-  private void renderHeader() throws IOException {
-    addPart();
+  private void renderHeader(PlacedText header) throws IOException {
     addSection(currentPart);
     beginMarkedContent(COSName.P);
     addContentToCurrentSection(COSName.P, StandardStructureTypes.H1);
     currentContent.endMarkedContent();
-    currentContent.beginText();
-    currentContent.newLineAtOffset(xPoint, yPoint);
-    currentContent.setFont(fontBold, headerFontSize);
-    String header = TextUtils.getAppOwnerName(instance.getOrg(), getLanguage(), textResources) + " - " + TextUtils.getAppName(textResources);
-    List<String> lines = TextUtils.splitTextToLines(header, fontBold, headerFontSize, width);
-    for (String line : lines) {
-      currentContent.showText(line);
-      currentContent.newLineAtOffset(0, -leading);
-      yPoint -= leading;
-    }
-    currentContent.endText();
-    yPoint -= textFieldMargin;
+    renderLines(header);
     addContentToCurrentSection(COSName.P, StandardStructureTypes.H1);
     currentContent.endMarkedContent();
   }
 
-  private void renderSubmittedBy() throws IOException {
+  private String getSubmittedBy() {
     if (party == null) {
-      return;
+      return null;
     }
-    beginMarkedContent(COSName.P);
-    addSection(currentPart);
-    currentContent.beginText();
-    currentContent.newLineAtOffset(xPoint, yPoint);
-    currentContent.setFont(font, fontSize);
-    String submittedBy;
     if (party.equals(userParty) || userParty == null) {
-      submittedBy = getLanguageString("delivered_by") + " " + party.getName();
-    } else {
-      submittedBy =
-        getLanguageString("delivered_by") + " " + userParty.getName() + " " + getLanguageString("on_behalf_of") + " " + party.getName();
+      return getLanguageString("delivered_by") + " " + party.getName();
     }
-    List<String> lines = TextUtils.splitTextToLines(submittedBy, font, fontSize, width);
-    lines.add(getLanguageString("reference_number") + " " + TextUtils.getInstanceGuid(instance.getId()).split("-")[4]);
-    lines.add(getLanguageString("date_generated") + " " + ZonedDateTime.now().withZoneSameInstant(ZoneId.of("Europe/Oslo")).format(DateTimeFormatter.ofPattern("dd.MM.yyyy / HH:mm")));
-    for (String line : lines) {
-      currentContent.showText(line);
-      currentContent.newLineAtOffset(0, -leading);
-      yPoint -= leading;
-    }
-    currentContent.endText();
-    addContentToCurrentSection(COSName.P, StandardStructureTypes.P);
-    currentContent.endMarkedContent();
-    yPoint -= componentMargin;
+    return getLanguageString("delivered_by") + " " + userParty.getName() + " " + getLanguageString("on_behalf_of") + " " + party.getName();
+  }
+
+  private List<String> getSubmittedByDetails() {
+    return Arrays.asList(
+      getLanguageString("reference_number") + " " + TextUtils.getInstanceGuid(instance.getId()).split("-")[4],
+      getLanguageString("date_generated") + " " + ZonedDateTime.now().withZoneSameInstant(ZoneId.of("Europe/Oslo")).format(DateTimeFormatter.ofPattern("dd.MM.yyyy / HH:mm"))
+    );
   }
 
   private void createNewPage() throws IOException {
@@ -464,30 +342,23 @@ public class PDFGenerator {
     currentContent = new PDPageContentStream(document, currentPage);
   }
 
-  private void renderText(String text, PDType0Font font, float fontSize, String type) throws IOException {
+  private void renderText(PlacedText text) throws IOException {
     addSection(currentPart);
     beginMarkedContent(COSName.P);
-    addContentToCurrentSection(COSName.P, type);
+    addContentToCurrentSection(COSName.P, text.getStructureType());
+    renderLines(text);
+    currentContent.endMarkedContent();
+  }
+
+  private void renderLines(PlacedText text) throws IOException {
     currentContent.beginText();
-    currentContent.newLineAtOffset(xPoint, yPoint);
-    currentContent.setFont(font, fontSize);
-    List<String> lines = TextUtils.splitTextToLines(text, font, fontSize, width);
-    for (String line : lines) {
+    currentContent.newLineAtOffset(text.getX(), text.getY());
+    currentContent.setFont(text.isBold() ? fontBold : font, text.getFontSize());
+    for (String line : text.getLines()) {
       currentContent.showText(line);
-      currentContent.newLineAtOffset(0, -leading);
-      yPoint -= leading;
+      currentContent.newLineAtOffset(0, -text.getLeading());
     }
     currentContent.endText();
-    currentContent.endMarkedContent();
-    yPoint -= textFieldMargin;
-  }
-
-  private void renderContent(String content) throws IOException {
-    float rectHeight = TextUtils.getHeightNeededForTextBox(content, font, fontSize, width - 2 * textFieldMargin, leading);
-    float fontHeight = TextUtils.getFontHeight(font, fontSize);
-    renderBox(xPoint, yPoint + fontHeight + 2, width, rectHeight);
-    renderText(content, font, fontSize, StandardStructureTypes.P);
-    yPoint -= (rectHeight + fontHeight);
   }
 
   private void renderBox(float xStart, float yStart, float width, float height) throws IOException {
@@ -503,202 +374,6 @@ public class PDFGenerator {
     currentContent.stroke();
   }
 
-  private void renderLayoutElementContent(FormLayoutElement element) throws IOException {
-
-    String value;
-
-    if (element.getOptionsId() != null || element.getOptions() != null || element.getSource() != null)  {
-      value = getDisplayValueFromOptions(element);
-    } else {
-      value = FormUtils.getFormDataByKey(element.getDataModelBindings().get("simpleBinding"), formData);
-    }
-
-    if (element.getType().equalsIgnoreCase("Datepicker")) {
-      renderContent(TextUtils.getDateFormat(value, getLanguage()));
-    } else {
-      renderContent(value);
-    }
-  }
-
-  private String getDisplayValueFromOptions(FormLayoutElement element) {
-    String value = FormUtils.getFormDataByKey(element.getDataModelBindings().get("simpleBinding"), formData);
-    List<String> splitFormData;
-    if (element.getType().equalsIgnoreCase("Checkboxes")) {
-      // checkboxes can have multiple values, need to fetch label for each one
-      splitFormData = Arrays.asList(value.split((",")));
-    } else {
-      // all other option components only have one selected value
-      splitFormData = new ArrayList<>();
-      splitFormData.add(value);
-    }
-
-    List<String> returnValues = new ArrayList<>();
-
-    if (element.getOptionsId() != null) {
-      if (optionsDictionary == null) {
-        return value;
-      }
-      splitFormData.forEach(formDataValue -> {
-          String label = MapUtils.getLabelFromValue(optionsDictionary, element.getOptionsId(), formDataValue);
-          returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
-        }
-      );
-    } else if (element.getSource() != null) {
-      FormLayoutElement group =
-        this.repeatingGroups
-          .stream()
-          .filter((FormLayoutElement e) -> e.getDataModelBindings().get("group").equals(element.getSource().getGroup()))
-          .findFirst()
-          .orElseThrow();
-      List<Option> optionList = OptionUtils.getOptionsFromOptionSource(element.getSource(), group, formData, textResources);
-      splitFormData.forEach(formDataValue -> {
-        var option = optionList.stream()
-          .filter(o -> o.getValue().equals(formDataValue))
-          .findFirst()
-          .orElse(null);
-        String label = (option != null) ? option.getLabel() : value;
-        returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
-      });
-    } else {
-      List<Option> optionList = element.getOptions();
-      splitFormData.forEach(formDataValue -> {
-          var option = optionList.stream()
-            .filter(o -> o.getValue().equals(formDataValue))
-            .findFirst()
-            .orElse(null);
-          String label = (option != null) ? option.getLabel() : value;
-          returnValues.add(TextUtils.getTextResourceByKey(label, textResources));
-        }
-      );
-
-    }
-
-    return String.join(", ", returnValues);
-  }
-
-  private Map<String, List<String>> getFileTagDisplayValueFromOptions(FormLayoutElement element, Map<String, List<String>> files) {
-    Map<String, List<String>> returnValues = new HashMap<String, List<String>>();
-
-    if (element.getOptionsId() != null) {
-      if (optionsDictionary == null) {
-        return files;
-      }
-      files.forEach((name, tags) -> {
-          List<String> tmpTags = new ArrayList<>();
-          tags.forEach(tag -> {
-            String label = MapUtils.getLabelFromValue(optionsDictionary, element.getOptionsId(), tag);
-            tmpTags.add(TextUtils.getTextResourceByKey(label, textResources));
-          });
-          returnValues.put(name, tmpTags);
-        }
-      );
-    } else {
-      List<Option> optionList = element.getOptions();
-      files.forEach((name, tags) -> {
-          List<String> tmpTags = new ArrayList<>();
-          tags.forEach(tag -> {
-            var option = optionList.stream()
-              .filter(o -> o.getValue().equals(tag))
-              .findFirst()
-              .orElse(null);
-            String label = (option != null) ? option.getLabel() : tag;
-            tmpTags.add(TextUtils.getTextResourceByKey(label, textResources));
-          });
-          returnValues.put(name, tmpTags);
-        }
-      );
-    }
-
-    return returnValues;
-  }
-
-  private void renderFileUploadContent(FormLayoutElement element) throws IOException {
-    List<String> files = InstanceUtils.getAttachmentsByComponentId(element.getId(), this.instance);
-    renderFileListContent(files);
-  }
-
-  private void renderFileUploadWithTagsContent(FormLayoutElement element) throws IOException {
-    Map<String, List<String>> filesAndTags = InstanceUtils.getAttachmentsAndTagsByComponentId(element.getId(), this.instance);
-    Map<String, List<String>> filesAndTagsDisplay = getFileTagDisplayValueFromOptions(element, filesAndTags);
-    renderFileListWithTagsContent(filesAndTagsDisplay);
-  }
-
-  private void renderAttachmentListContent(FormLayoutElement element) throws IOException {
-    List<String> files = new ArrayList<>();
-    for (String id : element.getDataTypeIds()) {
-      files.addAll(InstanceUtils.getAttachmentsByComponentId(id, this.instance));
-    }
-
-    renderFileListContent(files);
-  }
-
-  private void renderFileListContent(List<String> files) throws IOException {
-    addSection(currentPart);
-    beginMarkedContent(COSName.P);
-    currentContent.setFont(font, fontSize);
-    currentContent.beginText();
-    float indent = 10;
-    currentContent.newLineAtOffset(xPoint + indent, yPoint);
-    for (String file : files) {
-      currentContent.showText("- " + TextUtils.removeIllegalChars(file, font));
-      currentContent.newLineAtOffset(0, -leading);
-      yPoint -= leading;
-    }
-    currentContent.endText();
-    addContentToCurrentSection(COSName.P, StandardStructureTypes.P);
-    currentContent.endMarkedContent();
-  }
-
-  private void renderFileListWithTagsContent(Map<String, List<String>> files) throws IOException {
-    addSection(currentPart);
-    beginMarkedContent(COSName.P);
-    currentContent.setFont(font, fontSize);
-    currentContent.beginText();
-    float indent = 10;
-    currentContent.newLineAtOffset(xPoint + indent, yPoint);
-    for (String name : files.keySet()) {
-      List<String> tags = files.get(name);
-
-      currentContent.showText("- " + TextUtils.removeIllegalChars(name, font) + " - ");
-      for (String tag : tags) {
-        if (tag != tags.get(tags.size() - 1))
-          currentContent.showText(tag + ", ");
-        else
-          currentContent.showText(tag);
-      }
-      currentContent.newLineAtOffset(0, -leading);
-      yPoint -= leading;
-    }
-    currentContent.endText();
-    addContentToCurrentSection(COSName.P, StandardStructureTypes.P);
-    currentContent.endMarkedContent();
-  }
-
-  private void renderAddressComponent(FormLayoutElement element) throws IOException {
-    renderText(getLanguageString("address"), font, fontSize, StandardStructureTypes.P);
-    renderContent(FormUtils.getFormDataByKey(element.getDataModelBindings().get("address"), this.formData));
-    yPoint -= componentMargin;
-
-    renderText(getLanguageString("zip_code"), font, fontSize, StandardStructureTypes.P);
-    renderContent(FormUtils.getFormDataByKey(element.getDataModelBindings().get("zipCode"), this.formData));
-    yPoint -= componentMargin;
-
-    renderText(getLanguageString("post_place"), font, fontSize, StandardStructureTypes.P);
-    renderContent(FormUtils.getFormDataByKey(element.getDataModelBindings().get("postPlace"), this.formData));
-    yPoint -= componentMargin;
-
-    if (!element.isSimplified()) {
-      renderText(getLanguageString("care_of"), font, fontSize, StandardStructureTypes.P);
-      renderText(getLanguageString("house_number_helper"), font, fontSize, StandardStructureTypes.P);
-      renderContent(FormUtils.getFormDataByKey(element.getDataModelBindings().get("careOf"), this.formData));
-      yPoint -= componentMargin;
-
-      renderText(getLanguageString("house_number"), font, fontSize, StandardStructureTypes.P);
-      renderContent(FormUtils.getFormDataByKey(element.getDataModelBindings().get("houseNumber"), this.formData));
-      yPoint -= componentMargin;
-    }
-  }
-
   private void addPart() {
     PDStructureElement part = new PDStructureElement(StandardStructureTypes.PART, document.getDocumentCatalog().getStructureTreeRoot());
     document.getDocumentCatalog().getStructureTreeRoot().appendKid(part);
@@ -726,25 +401,6 @@ public class PDFGenerator {
     currentContent.beginMarkedContent(name, PDPropertyList.create(currentMarkedContentDictionary));
   }
 
-  private List<TextResourceElement> parseAndCleanTextResources(List<TextResourceElement> resources, Document formData, PDType0Font font) {
-    List<String> replaceValues = new ArrayList<>();
-
-    for (TextResourceElement res : resources) {
-      res.setValue(TextUtils.removeIllegalChars(res.getValue(), font));
-      replaceValues.clear();
-      if (res.getVariables() != null) {
-        for (TextResourceVariableElement variable : res.getVariables()) {
-          if (variable.getDataSource().startsWith("dataModel")) {
-            replaceValues.add(FormUtils.getFormDataByKey(variable.getKey(), formData));
-          }
-        }
-        res.setValue(TextUtils.replaceParameters(res.getValue(), replaceValues));
-      }
-    }
-
-    return resources;
-  }
-
   private String getLanguageString(String key) {
     return TextUtils.getLanguageStringByKey(key, getLanguage());
   }
@@ -756,4 +412,31 @@ public class PDFGenerator {
       return (this.userProfile != null) ? this.userProfile.getProfileSettingPreference().getLanguage() : "nb";
     }
   }
+
+  /**
+   * Counts the bytes of the saved pdf as they are written
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    private long getCount() {
+      return count;
+    }
+  }
 }
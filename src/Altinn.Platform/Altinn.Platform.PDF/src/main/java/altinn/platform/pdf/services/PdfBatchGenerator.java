@@ -0,0 +1,264 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.BatchItemStatus;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.utils.AppAssetCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the pdfs of a batch of pdf contexts into a zip stream. Items are read and validated as they are reached, and
+ * generated on the {@link GenerationExecutor}, at most the given number at a time, so they share the queue bound and
+ * cost budget of the single generations. Pdfs are written to the zip in the order the items were read. A status.json
+ * entry at the end of the zip holds the outcome of every item, an item that can not be read, is invalid, is rejected by
+ * the executor or fails to generate does not fail the batch.
+ */
+public class PdfBatchGenerator {
+
+  public static final String STATUS_OK = "OK";
+  public static final String STATUS_INVALID = "INVALID";
+  public static final String STATUS_REJECTED = "REJECTED";
+  public static final String STATUS_FAILED = "FAILED";
+
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final GenerationExecutor executor;
+  private final int parallelism;
+  private boolean parallelLayouts;
+  private AppAssetCache assetCache;
+  private GenerationMetrics metrics = GenerationMetrics.NONE;
+
+  /**
+   * @param objectMapper writes the status entry
+   * @param validator validates each pdf context as the generate endpoint does
+   * @param executor generates the items
+   * @param parallelism the maximum number of items of the batch generated at a time
+   */
+  public PdfBatchGenerator(ObjectMapper objectMapper, Validator validator, GenerationExecutor executor, int parallelism) {
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * @param parallelLayouts true to lay out the layouts of each pdf in parallel, see {@link PDFGenerator#setParallelLayouts(boolean)}
+   */
+  public void setParallelLayouts(boolean parallelLayouts) {
+    this.parallelLayouts = parallelLayouts;
+  }
+
+  /**
+   * @param assetCache shares the preprocessed app assets between the items, see {@link PDFGenerator#setAssetCache(AppAssetCache)}
+   */
+  public void setAssetCache(AppAssetCache assetCache) {
+    this.assetCache = assetCache;
+  }
+
+  /**
+   * @param metrics records the generation of each item, see {@link PDFGenerator#setMetrics(GenerationMetrics)}
+   */
+  public void setMetrics(GenerationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Generates the pdf of each item and writes them to a zip stream, named receipt-{index}.pdf
+   *
+   * @param items the items, each read when it is generated so a malformed item only fails itself. If the iterator
+   *              itself fails, the items read so far are still generated and the failure is reported as the last item.
+   * @param output the stream the zip is written to, not closed
+   * @throws IOException if the zip could not be written
+   */
+  public void generate(Iterator<Callable<PdfContext>> items, OutputStream output) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(output);
+    List<BatchItemStatus> statuses = new ArrayList<>();
+    Deque<Future<BatchItemStatus>> inFlight = new ArrayDeque<>(parallelism);
+    Deque<ByteArrayOutputStream> pdfs = new ArrayDeque<>(parallelism);
+    try {
+      int index = 0;
+      BatchItemStatus unreadable = null;
+      while (true) {
+        Callable<PdfContext> item;
+        try {
+          if (!items.hasNext()) {
+            break;
+          }
+          item = items.next();
+        } catch (RuntimeException e) {
+          // the reader can not find the start of the next item after malformed input, so the rest of the batch is lost
+          unreadable = new BatchItemStatus();
+          unreadable.setIndex(index);
+          unreadable.setStatus(STATUS_INVALID);
+          unreadable.setMessage("Could not read item or the items after it: " + e.getMessage());
+          break;
+        }
+        if (inFlight.size() == parallelism) {
+          // the oldest item is written before the next one is started, which bounds the pdfs held in memory
+          statuses.add(writeItem(zip, inFlight.removeFirst(), pdfs.removeFirst()));
+        }
+        int itemIndex = index++;
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        inFlight.addLast(submitItem(itemIndex, item, pdf));
+        pdfs.addLast(pdf);
+      }
+      while (!inFlight.isEmpty()) {
+        statuses.add(writeItem(zip, inFlight.removeFirst(), pdfs.removeFirst()));
+      }
+      if (unreadable != null) {
+        statuses.add(unreadable);
+      }
+    } finally {
+      inFlight.forEach(task -> task.cancel(true));
+    }
+    zip.putNextEntry(new ZipEntry("status.json"));
+    // the mapper must not close the zip when the status has been written
+    objectMapper.writerWithDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(zip, statuses);
+    zip.closeEntry();
+    zip.finish();
+  }
+
+  /**
+   * Reads the items of a json array one at a time, an item that can not be bound only fails itself. Malformed json ends
+   * the batch, as the items after it can not be found.
+   *
+   * @param objectMapper binds the items
+   * @param input the json array
+   * @return the items
+   * @throws IOException if the start of the array could not be read
+   */
+  public static Iterator<Callable<PdfContext>> readJsonItems(ObjectMapper objectMapper, InputStream input) throws IOException {
+    MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(input);
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return nodes.hasNext();
+      }
+
+      @Override
+      public Callable<PdfContext> next() {
+        JsonNode node = nodes.next();
+        return () -> objectMapper.treeToValue(node, PdfContext.class);
+      }
+    };
+  }
+
+  /**
+   * Reads one item per line, blank lines are skipped. A malformed line only fails its own item.
+   *
+   * @param objectMapper binds the items
+   * @param input the ndjson stream
+   * @return the items
+   */
+  public static Iterator<Callable<PdfContext>> readNdjsonItems(ObjectMapper objectMapper, InputStream input) {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    Iterator<String> lines = reader.lines().filter(line -> !line.isBlank()).iterator();
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return lines.hasNext();
+      }
+
+      @Override
+      public Callable<PdfContext> next() {
+        String line = lines.next();
+        return () -> objectMapper.readValue(line, PdfContext.class);
+      }
+    };
+  }
+
+  /**
+   * Reads and validates an item, and submits its generation. An item that is not generated is completed with its status.
+   */
+  private Future<BatchItemStatus> submitItem(int index, Callable<PdfContext> item, ByteArrayOutputStream pdf) {
+    BatchItemStatus status = new BatchItemStatus();
+    status.setIndex(index);
+    PdfContext pdfContext;
+    try {
+      pdfContext = item.call();
+    } catch (Exception e) {
+      status.setStatus(STATUS_INVALID);
+      status.setMessage("Could not read item: " + e.getMessage());
+      return CompletableFuture.completedFuture(status);
+    }
+    Set<ConstraintViolation<PdfContext>> violations = (pdfContext != null) ? validator.validate(pdfContext) : Set.of();
+    if (pdfContext == null || !violations.isEmpty()) {
+      status.setStatus(STATUS_INVALID);
+      status.setMessage((pdfContext == null) ? "Item is empty" : violations.stream()
+        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+        .sorted()
+        .collect(Collectors.joining(", ")));
+      return CompletableFuture.completedFuture(status);
+    }
+    try {
+      return executor.submit(GenerationExecutor.estimateCost(pdfContext), () -> generateItem(status, pdfContext, pdf));
+    } catch (GenerationRejectedException e) {
+      status.setStatus(STATUS_REJECTED);
+      status.setMessage(e.getMessage() + ", retry after " + e.getRetryAfterSeconds() + " seconds");
+      return CompletableFuture.completedFuture(status);
+    }
+  }
+
+  private BatchItemStatus generateItem(BatchItemStatus status, PdfContext pdfContext, ByteArrayOutputStream pdf) {
+    int index = status.getIndex();
+    try {
+      PDFGenerator generator = new PDFGenerator(pdfContext);
+      generator.setParallelLayouts(parallelLayouts);
+      generator.setAssetCache(assetCache);
+      generator.setMetrics(metrics);
+      generator.generatePDF(pdf);
+      status.setStatus(STATUS_OK);
+      status.setFileName("receipt-" + index + ".pdf");
+    } catch (Exception e) {
+      BasicLogger.log(Level.SEVERE, e.toString());
+      status.setStatus(STATUS_FAILED);
+      status.setMessage(e.toString());
+    }
+    return status;
+  }
+
+  private BatchItemStatus writeItem(ZipOutputStream zip, Future<BatchItemStatus> task, ByteArrayOutputStream pdf) throws IOException {
+    BatchItemStatus status;
+    try {
+      status = task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating batch");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    if (STATUS_OK.equals(status.getStatus())) {
+      zip.putNextEntry(new ZipEntry(status.getFileName()));
+      pdf.writeTo(zip);
+      zip.closeEntry();
+    }
+    return status;
+  }
+}
@@ -0,0 +1,205 @@
+package altinn.platform.pdf.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps the generated pdfs of the jobs until they are removed. Pdfs are kept in memory while the memory budget allows,
+ * and spilled to files otherwise. Both are bounded, a pdf that fits in neither is not stored. The files are spilled to a
+ * directory of the store's own, created in the given directory on first use, so the disk budget only counts the files
+ * of this store. Thread safe.
+ */
+public class PdfResultStore {
+
+  private final long maxMemoryBytes;
+  private final long maxDiskBytes;
+  private final Path spillParent;
+  private final Map<String, Result> results = new ConcurrentHashMap<>();
+  private Path spillDirectory;
+  private long memoryBytes;
+  private long diskBytes;
+  private boolean closed;
+
+  /**
+   * @param maxMemoryBytes the total size of the pdfs kept in memory
+   * @param maxDiskBytes the total size of the pdfs spilled to disk
+   * @param spillParent the directory the store's spill directory is created in
+   */
+  public PdfResultStore(long maxMemoryBytes, long maxDiskBytes, Path spillParent) {
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxDiskBytes = maxDiskBytes;
+    this.spillParent = spillParent;
+  }
+
+  /**
+   * Stores a pdf
+   * @param id the job id
+   * @param pdf the pdf, kept as it is if it fits in memory so it must not be changed afterwards
+   * @return true if the pdf was stored, false if the store is full or closed
+   * @throws IOException if the pdf could not be spilled to disk
+   */
+  public boolean put(String id, ByteArrayOutputStream pdf) throws IOException {
+    long size = pdf.size();
+    if (reserve(size, true)) {
+      return keep(id, new Result(pdf, null, size));
+    }
+    if (!reserve(size, false)) {
+      return false;
+    }
+    Path file = null;
+    try {
+      file = Files.createTempFile(getSpillDirectory(), "pdf-job-", ".pdf");
+      try (OutputStream output = Files.newOutputStream(file)) {
+        pdf.writeTo(output);
+      }
+      return keep(id, new Result(null, file, size));
+    } catch (IOException e) {
+      release(size, false);
+      if (file != null) {
+        Files.deleteIfExists(file);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Writes a stored pdf
+   * @param id the job id
+   * @param output the stream the pdf is written to
+   * @return false if there is no pdf for the job
+   * @throws IOException if the pdf could not be read or written
+   */
+  public boolean write(String id, OutputStream output) throws IOException {
+    Result result = results.get(id);
+    if (result == null) {
+      return false;
+    }
+    if (result.pdf != null) {
+      result.pdf.writeTo(output);
+    } else {
+      Files.copy(result.file, output);
+    }
+    return true;
+  }
+
+  /**
+   * Removes a stored pdf, deleting its file if it was spilled
+   * @param id the job id
+   */
+  public void remove(String id) {
+    Result result = results.remove(id);
+    if (result == null) {
+      return;
+    }
+    release(result.size, result.file == null);
+    if (result.file != null) {
+      try {
+        Files.deleteIfExists(result.file);
+      } catch (IOException e) {
+        BasicLogger.log(Level.WARNING, "Could not delete " + result.file + ": " + e);
+      }
+    }
+  }
+
+  /**
+   * Removes all stored pdfs and deletes the spill directory. Pdfs stored afterwards are not kept.
+   */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    results.keySet().forEach(this::remove);
+    Path directory;
+    synchronized (this) {
+      directory = spillDirectory;
+      spillDirectory = null;
+    }
+    if (directory != null) {
+      try {
+        Files.deleteIfExists(directory);
+      } catch (IOException e) {
+        BasicLogger.log(Level.WARNING, "Could not delete " + directory + ": " + e);
+      }
+    }
+  }
+
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  public synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  /**
+   * Keeps a stored pdf, unless the store was closed while it was stored
+   */
+  private boolean keep(String id, Result result) {
+    results.put(id, result);
+    synchronized (this) {
+      if (!closed) {
+        return true;
+      }
+    }
+    remove(id);
+    return false;
+  }
+
+  /**
+   * Gets the spill directory, creating it if it does not exist, e.g. on first use or if it was cleaned up
+   */
+  private synchronized Path getSpillDirectory() throws IOException {
+    if (closed) {
+      throw new IOException("The pdf result store is closed");
+    }
+    if (spillDirectory == null || !Files.isDirectory(spillDirectory)) {
+      Files.createDirectories(spillParent);
+      spillDirectory = Files.createTempDirectory(spillParent, "pdf-jobs-");
+    }
+    return spillDirectory;
+  }
+
+  private synchronized boolean reserve(long size, boolean memory) {
+    if (closed) {
+      return false;
+    }
+    if (memory) {
+      if (memoryBytes + size > maxMemoryBytes) {
+        return false;
+      }
+      memoryBytes += size;
+    } else {
+      if (diskBytes + size > maxDiskBytes) {
+        return false;
+      }
+      diskBytes += size;
+    }
+    return true;
+  }
+
+  private synchronized void release(long size, boolean memory) {
+    if (memory) {
+      memoryBytes -= size;
+    } else {
+      diskBytes -= size;
+    }
+  }
+
+  private static class Result {
+    private final ByteArrayOutputStream pdf;
+    private final Path file;
+    private final long size;
+
+    private Result(ByteArrayOutputStream pdf, Path file, long size) {
+      this.pdf = pdf;
+      this.file = file;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package altinn.platform.pdf.utils;
+
+import altinn.platform.pdf.models.*;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the {@link AppAssets} of the apps generating pdfs. Assets are keyed by a SHA-256 hash of the app level parts
+ * of the pdf context: the layouts, the layout settings, the text resources and the options. Contexts bound by the
+ * service carry a key computed as they were read, see {@link AppAssetsKeyModule}, other contexts are serialized to be
+ * keyed. A new version of an app is a new entry, and the old one is evicted when it has been unused the longest.
+ *
+ * The cache is bounded both by the number of entries and by their total weight, the size of the serialized parts. An
+ * entry heavier than the whole cache is not cached. Thread safe.
+ */
+public class AppAssetCache {
+
+  private static final Gson gson = new Gson();
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final Map<String, AppAssets> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * @param maxEntries the maximum number of apps cached
+   * @param maxWeight the maximum total size of the cached assets in bytes
+   */
+  public AppAssetCache(int maxEntries, long maxWeight) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Gets the assets of the app of a pdf context, preprocessing and caching them if they are not cached. The pdf context
+   * is not changed.
+   * @param pdfContext the pdf context
+   * @param fontMetrics the metrics of the font the texts are drawn with
+   * @return the assets
+   */
+  public AppAssets get(PdfContext pdfContext, FontMetrics fontMetrics) {
+    if (maxEntries <= 0 || maxWeight <= 0) {
+      return AppAssets.of(pdfContext, fontMetrics);
+    }
+    // a context bound by the service is keyed as it is read, other contexts are serialized to be keyed
+    HashingStream hash = null;
+    String key = pdfContext.getAppAssetsKey();
+    if (key == null) {
+      hash = hash(pdfContext);
+      key = hash.getKey();
+    }
+    synchronized (this) {
+      AppAssets assets = entries.get(key);
+      if (assets != null && assets.getFontMetrics() == fontMetrics) {
+        hitCount++;
+        return assets;
+      }
+      missCount++;
+    }
+    if (hash == null) {
+      // only weighed on a miss
+      hash = hash(pdfContext);
+    }
+    // preprocessed outside the lock, racing requests for the same app build the same assets
+    AppAssets assets = AppAssets.of(pdfContext, fontMetrics, hash.getCount());
+    if (assets.getWeight() <= maxWeight) {
+      put(key, assets);
+    }
+    return assets;
+  }
+
+  /**
+   * @return the number of cached apps
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total size of the cached assets in bytes
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Removes all cached assets
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  private synchronized void put(String key, AppAssets assets) {
+    AppAssets previous = entries.put(key, assets);
+    if (previous != null) {
+      weight -= previous.getWeight();
+    }
+    weight += assets.getWeight();
+    Iterator<AppAssets> eldest = entries.values().iterator();
+    while (entries.size() > maxEntries || weight > maxWeight) {
+      AppAssets evicted = eldest.next();
+      eldest.remove();
+      weight -= evicted.getWeight();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Hashes the app level parts of a pdf context as they are serialized, without holding the serialized form in memory
+   */
+  private static HashingStream hash(PdfContext pdfContext) {
+    AppParts parts = new AppParts();
+    parts.textResources = pdfContext.getTextResources();
+    parts.formLayout = pdfContext.getFormLayout();
+    parts.formLayouts = pdfContext.getFormLayouts();
+    parts.layoutSettings = pdfContext.getLayoutSettings();
+    parts.optionsDictionary = pdfContext.getOptionsDictionary();
+    HashingStream hash = new HashingStream();
+    try (Writer writer = new OutputStreamWriter(hash, StandardCharsets.UTF_8)) {
+      gson.toJson(parts, writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return hash;
+  }
+
+  private static class AppParts {
+    private TextResources textResources;
+    private FormLayout formLayout;
+    private Map<String, FormLayout> formLayouts;
+    private LayoutSettings layoutSettings;
+    private Map<String, Map<String, String>> optionsDictionary;
+  }
+
+  /**
+   * Digests and counts the bytes written to it, discarding them
+   */
+  private static class HashingStream extends DigestOutputStream {
+    private long count;
+
+    private HashingStream() {
+      super(OutputStream.nullOutputStream(), sha256());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      super.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      count += len;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    String getKey() {
+      StringBuilder key = new StringBuilder(64);
+      for (byte b : getMessageDigest().digest()) {
+        key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return key.toString();
+    }
+
+    private static MessageDigest sha256() {
+      try {
+        return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not supported", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package altinn.platform.pdf.utils;
+
+import altinn.platform.pdf.models.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The app level parts of a pdf context, preprocessed once so they can be shared by every pdf of the app: the layouts
+ * with their filtered element lists and id indexes, the data bindings they reference, the sanitized text resources and
+ * the option sets inverted for label lookups. Only the instance data is processed per pdf.
+ *
+ * Assets are read only once created, and are shared between threads through the {@link AppAssetCache}. Text resources
+ * with variables are copied before the form data is inserted, see {@link #resolveTextResources(FormDataIndex)}.
+ */
+public final class AppAssets {
+
+  private final FormLayout formLayout;
+  private final Map<String, FormLayout> formLayouts;
+  private final LayoutSettings layoutSettings;
+  private final Map<String, Map<String, String>> optionsDictionary;
+  private final String textResourcesLanguage;
+  private final List<TextResourceElement> textResources;
+  private final Map<FormLayout, List<FormLayoutElement>> filteredLayouts = new IdentityHashMap<>();
+  private final Map<String, Map<String, String>> invertedOptions = new ConcurrentHashMap<>();
+  private final Set<String> referencedBindings;
+  private final FontMetrics fontMetrics;
+  private final long weight;
+
+  private AppAssets(PdfContext pdfContext, FontMetrics fontMetrics, long weight) {
+    this.formLayout = pdfContext.getFormLayout();
+    this.formLayouts = pdfContext.getFormLayouts();
+    this.layoutSettings = pdfContext.getLayoutSettings();
+    this.optionsDictionary = pdfContext.getOptionsDictionary();
+    this.fontMetrics = fontMetrics;
+    this.weight = weight;
+
+    List<List<FormLayoutElement>> layouts = new ArrayList<>();
+    for (FormLayout layout : getLayouts()) {
+      List<FormLayoutElement> elements = layout.getData().getLayout();
+      layouts.add(elements);
+      filteredLayouts.put(layout, Collections.unmodifiableList(FormUtils.getFilteredLayout(elements)));
+      // builds the id index up front, it is kept with the layout
+      layout.getData().getElementById("");
+    }
+
+    TextResources resources = pdfContext.getTextResources();
+    this.referencedBindings = Collections.unmodifiableSet(FormUtils.getReferencedBindings(layouts, resources));
+    this.textResourcesLanguage = (resources != null) ? resources.getLanguage() : null;
+    this.textResources = (resources != null && resources.getResources() != null)
+      ? sanitizeTextResources(resources.getResources(), fontMetrics)
+      : null;
+  }
+
+  /**
+   * Preprocesses the app level parts of a pdf context, without caching them. The pdf context is not changed.
+   * @param pdfContext the pdf context
+   * @param fontMetrics the metrics of the font the texts are drawn with, chars it can not draw are removed
+   * @return the assets
+   */
+  public static AppAssets of(PdfContext pdfContext, FontMetrics fontMetrics) {
+    return new AppAssets(pdfContext, fontMetrics, 0);
+  }
+
+  static AppAssets of(PdfContext pdfContext, FontMetrics fontMetrics, long weight) {
+    return new AppAssets(pdfContext, fontMetrics, weight);
+  }
+
+  public FormLayout getFormLayout() {
+    return formLayout;
+  }
+
+  public Map<String, FormLayout> getFormLayouts() {
+    return formLayouts;
+  }
+
+  public LayoutSettings getLayoutSettings() {
+    return layoutSettings;
+  }
+
+  public Map<String, Map<String, String>> getOptionsDictionary() {
+    return optionsDictionary;
+  }
+
+  /**
+   * Gets an option set inverted, mapping each value to its label, see {@link MapUtils#invert(Map)}. Each option set is
+   * inverted on its first lookup.
+   * @param optionsId the id of the option set
+   * @return the labels keyed by value, null if the pdf context has no options
+   */
+  public Map<String, String> getInvertedOptions(String optionsId) {
+    if (optionsDictionary == null) {
+      return null;
+    }
+    return invertedOptions.computeIfAbsent(optionsId, id -> MapUtils.invert(optionsDictionary.get(id)));
+  }
+
+  /**
+   * @return the data bindings referenced by the layouts and text resources, see
+   * {@link FormUtils#getReferencedBindings(java.util.Collection, TextResources)}
+   */
+  public Set<String> getReferencedBindings() {
+    return referencedBindings;
+  }
+
+  /**
+   * Gets the elements of a layout that are not rendered by a group, see {@link FormUtils#getFilteredLayout(List)}
+   * @param layout a layout of the assets
+   * @return an unmodifiable list of the elements
+   */
+  public List<FormLayoutElement> getFilteredLayout(FormLayout layout) {
+    List<FormLayoutElement> filtered = filteredLayouts.get(layout);
+    return (filtered != null) ? filtered : FormUtils.getFilteredLayout(layout.getData().getLayout());
+  }
+
+  /**
+   * Creates the text resources of a pdf. Resources without variables are shared with every pdf of the app and must not
+   * be changed, resources with variables are copies with the form data inserted.
+   * @param formData the form data of the pdf
+   * @return the text resources, null if the app has none
+   */
+  public TextResources resolveTextResources(FormDataIndex formData) {
+    if (textResources == null) {
+      return null;
+    }
+    List<TextResourceElement> resolved = new ArrayList<>(textResources.size());
+    List<String> replaceValues = new ArrayList<>();
+    for (TextResourceElement resource : textResources) {
+      if (resource.getVariables() == null) {
+        resolved.add(resource);
+        continue;
+      }
+      replaceValues.clear();
+      for (TextResourceVariableElement variable : resource.getVariables()) {
+        if (variable.getDataSource().startsWith("dataModel")) {
+          replaceValues.add(FormUtils.getFormDataByKey(variable.getKey(), formData));
+        }
+      }
+      TextResourceElement copy = new TextResourceElement();
+      copy.setId(resource.getId());
+      copy.setVariables(resource.getVariables());
+      copy.setValue(TextUtils.replaceParameters(resource.getValue(), replaceValues));
+      resolved.add(copy);
+    }
+    TextResources pdfTextResources = new TextResources();
+    pdfTextResources.setLanguage(textResourcesLanguage);
+    pdfTextResources.setResources(resolved);
+    return pdfTextResources;
+  }
+
+  /**
+   * @return the metrics of the font the text resources were sanitized for
+   */
+  public FontMetrics getFontMetrics() {
+    return fontMetrics;
+  }
+
+  /**
+   * @return the approximate size of the assets in bytes, the size of the serialized app level parts
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  private List<FormLayout> getLayouts() {
+    List<FormLayout> layouts = new ArrayList<>();
+    if (formLayout != null && formLayout.getData() != null) {
+      layouts.add(formLayout);
+    }
+    if (formLayouts != null) {
+      formLayouts.values().stream()
+        .filter(layout -> layout != null && layout.getData() != null)
+        .forEach(layouts::add);
+    }
+    return layouts;
+  }
+
+  private static List<TextResourceElement> sanitizeTextResources(List<TextResourceElement> resources, FontMetrics fontMetrics) {
+    List<TextResourceElement> sanitized = new ArrayList<>(resources.size());
+    for (TextResourceElement resource : resources) {
+      TextResourceElement copy = new TextResourceElement();
+      copy.setId(resource.getId());
+      copy.setVariables(resource.getVariables());
+      copy.setValue(TextUtils.removeIllegalChars(resource.getValue(), fontMetrics));
+      sanitized.add(copy);
+    }
+    return Collections.unmodifiableList(sanitized);
+  }
+}
@@ -0,0 +1,174 @@
+package altinn.platform.pdf.utils;
+
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.PdfContext;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * Keys the app level parts of a pdf context as it is bound, see {@link PdfContext#getAppAssetsKey()}. The key is the
+ * app id and a SHA-256 hash of the json tokens of the layouts, the layout settings, the text resources and the options,
+ * hashed as they are read. The {@link AppAssetCache} looks up the assets of a bound context by this key, without
+ * serializing the parts again.
+ */
+public class AppAssetsKeyModule extends SimpleModule {
+
+  private static final Set<String> APP_PARTS = Set.of("textResources", "formLayout", "formLayouts", "layoutSettings", "optionsDictionary");
+
+  public AppAssetsKeyModule() {
+    super("AppAssetsKeyModule");
+    setDeserializerModifier(new BeanDeserializerModifier() {
+      @Override
+      public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+        return PdfContext.class.equals(beanDesc.getBeanClass()) ? new KeyingDeserializer(deserializer) : deserializer;
+      }
+    });
+  }
+
+  /**
+   * Buffers the tokens of a pdf context, binds them and hashes the app level parts. The data is buffered by reference,
+   * only the app level parts are hashed.
+   */
+  private static class KeyingDeserializer extends DelegatingDeserializer {
+
+    private KeyingDeserializer(JsonDeserializer<?> delegatee) {
+      super(delegatee);
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+      return new KeyingDeserializer(newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      if (p.currentToken() != JsonToken.START_OBJECT) {
+        return super.deserialize(p, ctxt);
+      }
+      TokenBuffer buffer = ctxt.bufferForInputBuffering(p);
+      buffer.copyCurrentStructure(p);
+      Object value = super.deserialize(buffer.asParserOnFirstToken(), ctxt);
+      if (value instanceof PdfContext) {
+        PdfContext pdfContext = (PdfContext) value;
+        try (JsonParser parts = buffer.asParser()) {
+          pdfContext.setAppAssetsKey(getAppId(pdfContext) + "/" + hashAppParts(parts));
+        }
+      }
+      return value;
+    }
+  }
+
+  private static String getAppId(PdfContext pdfContext) {
+    Instance instance = pdfContext.getInstance();
+    return (instance != null && instance.getAppId() != null) ? instance.getAppId() : "unknown";
+  }
+
+  private static String hashAppParts(JsonParser parser) throws IOException {
+    TokenDigest digest = new TokenDigest();
+    parser.nextToken();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      if (APP_PARTS.contains(name)) {
+        digest.update(JsonToken.FIELD_NAME, name);
+        digestStructure(parser, digest);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return digest.getKey();
+  }
+
+  /**
+   * Digests the value at the current token, with all its children
+   */
+  private static void digestStructure(JsonParser parser, TokenDigest digest) throws IOException {
+    int depth = 0;
+    JsonToken token = parser.currentToken();
+    while (true) {
+      if (token.isStructStart()) {
+        depth++;
+        digest.update(token, null);
+      } else if (token.isStructEnd()) {
+        depth--;
+        digest.update(token, null);
+      } else {
+        digest.update(token, parser.getText());
+      }
+      if (depth == 0) {
+        return;
+      }
+      token = parser.nextToken();
+    }
+  }
+
+  /**
+   * Digests tokens through a reusable buffer, each token as its id followed by its length prefixed text
+   */
+  private static class TokenDigest {
+    private final MessageDigest digest = sha256();
+    private final byte[] buffer = new byte[8192];
+    private int position;
+
+    private void update(JsonToken token, String text) {
+      ensure(1);
+      buffer[position++] = (byte) token.id();
+      if (text == null) {
+        return;
+      }
+      putInt(text.length());
+      for (int i = 0; i < text.length(); i++) {
+        ensure(2);
+        char c = text.charAt(i);
+        buffer[position++] = (byte) (c >> 8);
+        buffer[position++] = (byte) c;
+      }
+    }
+
+    private void putInt(int value) {
+      ensure(4);
+      buffer[position++] = (byte) (value >> 24);
+      buffer[position++] = (byte) (value >> 16);
+      buffer[position++] = (byte) (value >> 8);
+      buffer[position++] = (byte) value;
+    }
+
+    private void ensure(int bytes) {
+      if (position + bytes > buffer.length) {
+        digest.update(buffer, 0, position);
+        position = 0;
+      }
+    }
+
+    private String getKey() {
+      digest.update(buffer, 0, position);
+      position = 0;
+      StringBuilder key = new StringBuilder(64);
+      for (byte b : digest.digest()) {
+        key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return key.toString();
+    }
+
+    private static MessageDigest sha256() {
+      try {
+        return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not supported", e);
+      }
+    }
+  }
+}
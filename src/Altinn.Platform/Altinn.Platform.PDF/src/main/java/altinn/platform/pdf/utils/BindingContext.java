@@ -0,0 +1,132 @@
+package altinn.platform.pdf.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The repeating group row a component is rendered in. Resolves the component's data bindings to the row, e.g.
+ * "group.field" to "group[2].field", without touching the layout, so the same layout can be rendered for every row and
+ * shared between requests. Each row of a group gets its own context.
+ *
+ * Bindings are compiled into a {@link BindingTemplate} once per group, and the rows of the group only insert their
+ * index. Nested groups are resolved level by level: the nested group binding is resolved in the parent row first, and
+ * its rows compile against the resolved binding.
+ *
+ * A {@link Group} and the contexts of its rows fill the template caches of the group as bindings are resolved, so they
+ * are not thread safe and must not be shared: they are created per pdf generation, by the thread laying out the layout.
+ * Only {@link #ROOT}, which has no caches, is shared.
+ */
+public final class BindingContext {
+
+  /**
+   * The context of components outside repeating groups, bindings are used as they are
+   */
+  public static final BindingContext ROOT = new BindingContext(null, 0);
+
+  private final Group group;
+  private final int groupIndex;
+
+  private BindingContext(Group group, int groupIndex) {
+    this.group = group;
+    this.groupIndex = groupIndex;
+  }
+
+  /**
+   * Creates the context of a repeating group rendered in this context
+   * @param groupBinding the group binding, resolved in this context, see {@link #resolveGroupBinding(String)}
+   * @return the group, which creates the contexts of its rows
+   */
+  public Group forGroup(String groupBinding) {
+    return new Group(groupBinding, group != null);
+  }
+
+  /**
+   * Creates the context of a row of a repeating group rendered in this context. Rows of the same group should be created
+   * from one {@link #forGroup(String)} so they share the compiled bindings.
+   * @param groupBinding the group binding, resolved in this context, see {@link #resolveGroupBinding(String)}
+   * @param groupIndex the row index
+   * @return the row context
+   */
+  public BindingContext forRow(String groupBinding, int groupIndex) {
+    return forGroup(groupBinding).forRow(groupIndex);
+  }
+
+  /**
+   * @return the resolved binding of the group this is a row of, null for the root context
+   */
+  public String getGroupBinding() {
+    return (group != null) ? group.groupBinding : null;
+  }
+
+  /**
+   * @return the row index, 0 for the root context
+   */
+  public int getGroupIndex() {
+    return groupIndex;
+  }
+
+  /**
+   * Resolves the binding of a component in this row
+   * @param binding the binding as defined in the layout
+   * @return the binding indexed for this row
+   */
+  public String resolve(String binding) {
+    if (group == null || binding == null) {
+      return binding;
+    }
+    return group.bindings.computeIfAbsent(binding, group::compileBinding).apply(groupIndex);
+  }
+
+  /**
+   * Resolves the group binding of a repeating group nested in this row
+   * @param binding the group binding as defined in the layout
+   * @return the group binding indexed for this row
+   */
+  public String resolveGroupBinding(String binding) {
+    if (group == null || binding == null) {
+      return binding;
+    }
+    return group.groupBindings.computeIfAbsent(binding, b -> BindingTemplate.compile(b, group.groupBinding)).apply(groupIndex);
+  }
+
+  /**
+   * A repeating group, holding the bindings compiled against its group binding for all its rows
+   */
+  public static final class Group {
+    private final String groupBinding;
+    private final String nonIndexedGroupBinding;
+    private final Map<String, BindingTemplate> bindings = new HashMap<>();
+    private final Map<String, BindingTemplate> groupBindings = new HashMap<>();
+
+    private Group(String groupBinding, boolean childGroup) {
+      this.groupBinding = groupBinding;
+      this.nonIndexedGroupBinding = childGroup ? getNonIndexedGroupBinding(groupBinding) : null;
+    }
+
+    /**
+     * Creates the context of a row of the group
+     * @param groupIndex the row index
+     * @return the row context
+     */
+    public BindingContext forRow(int groupIndex) {
+      return new BindingContext(this, groupIndex);
+    }
+
+    private BindingTemplate compileBinding(String binding) {
+      if (nonIndexedGroupBinding != null) {
+        // the binding is relative to the non indexed group, point it at the indexed parent rows
+        binding = binding.replace(nonIndexedGroupBinding, groupBinding);
+      }
+      return BindingTemplate.compile(binding, groupBinding);
+    }
+
+    private static String getNonIndexedGroupBinding(String groupBinding) {
+      int indexStart = groupBinding.indexOf('[');
+      int indexEnd = groupBinding.indexOf(']');
+      if (indexStart < 0 || indexEnd < indexStart) {
+        return null;
+      }
+      return groupBinding.replace(groupBinding.substring(indexStart, indexEnd + 1), "");
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package altinn.platform.pdf.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * A data model binding parsed into its segments. Segment names are normalized the way data model element names are
+ * matched (dashes removed, lower case), and group indices are parsed once, so resolving the binding does no string work.
+ */
+public final class BindingPath {
+
+  private static final Pattern SEGMENT_SEPARATOR = Pattern.compile(Pattern.quote("."));
+  private static final Pattern GROUP_INDEX = Pattern.compile("\\[[^\\]]*]");
+  private static final String VALUE_SUFFIX = ".value";
+
+  private final String[] names;
+  private final int[] indices;
+
+  private BindingPath(String[] names, int[] indices) {
+    this.names = names;
+    this.indices = indices;
+  }
+
+  /**
+   * Parses a data model binding, e.g. "group[1].field.value"
+   * @param binding the data model binding
+   * @return the parsed binding
+   * @throws NumberFormatException if a group index is not a number
+   */
+  public static BindingPath compile(String binding) {
+    if (binding.contains(VALUE_SUFFIX)) {
+      binding = binding.replace(VALUE_SUFFIX, "");
+    }
+    String[] segments = SEGMENT_SEPARATOR.split(binding);
+    String[] names = new String[segments.length];
+    int[] indices = new int[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      String segment = normalizeName(segments[i]);
+      int bracketStart = segment.indexOf('[');
+      if (bracketStart > -1) {
+        int bracketEnd = segment.indexOf(']', bracketStart);
+        indices[i] = Integer.parseInt(segment.substring(bracketStart + 1, bracketEnd));
+        segment = segment.substring(0, bracketStart) + segment.substring(bracketEnd + 1);
+      }
+      names[i] = segment;
+    }
+    return new BindingPath(names, indices);
+  }
+
+  /**
+   * Normalizes a binding for matching regardless of group indices, e.g. "Group-grp[{0}].Field.value" becomes
+   * "groupgrp.field"
+   * @param binding the data model binding
+   * @return the normalized binding
+   */
+  public static String normalizeBinding(String binding) {
+    if (binding.contains(VALUE_SUFFIX)) {
+      binding = binding.replace(VALUE_SUFFIX, "");
+    }
+    String[] segments = SEGMENT_SEPARATOR.split(binding);
+    StringBuilder normalized = new StringBuilder(binding.length());
+    for (int i = 0; i < segments.length; i++) {
+      if (i > 0) {
+        normalized.append('.');
+      }
+      normalized.append(normalizeName(GROUP_INDEX.matcher(segments[i]).replaceAll("")));
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Normalizes an element name or binding segment for matching. Dashes are removed and the name is lower cased.
+   * @param name the name
+   * @return the normalized name
+   */
+  public static String normalizeName(String name) {
+    return name.replace("-", "").toLowerCase();
+  }
+
+  /**
+   * @return the number of segments
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * @param segment the segment position
+   * @return the normalized name of the segment
+   */
+  public String getName(int segment) {
+    return names[segment];
+  }
+
+  /**
+   * @param segment the segment position
+   * @return the group index of the segment, 0 if the segment is not indexed
+   */
+  public int getIndex(int segment) {
+    return indices[segment];
+  }
+}
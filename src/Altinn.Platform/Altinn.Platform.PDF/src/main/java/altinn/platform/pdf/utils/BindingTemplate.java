@@ -0,0 +1,95 @@
+package altinn.platform.pdf.utils;
+
+import java.util.Arrays;
+
+/**
+ * A data binding with the places where a group index is inserted found up front, see
+ * {@link FormUtils#setGroupIndexForBinding(String, String, int)}. Compile once per binding and group binding pair, then
+ * apply for every row.
+ *
+ * The group binding is matched the way the word bounded pattern {@code \bgroup\b(?!\[)} matches it: as a literal, with
+ * word boundaries on both sides, and not already followed by an index.
+ */
+public final class BindingTemplate {
+
+  private final String groupBinding;
+  private final String[] parts;
+
+  private BindingTemplate(String groupBinding, String[] parts) {
+    this.groupBinding = groupBinding;
+    this.parts = parts;
+  }
+
+  /**
+   * Finds the occurrences of the group binding in a binding
+   * @param fullBinding the binding
+   * @param groupBinding the group binding
+   * @return the template
+   */
+  public static BindingTemplate compile(String fullBinding, String groupBinding) {
+    int groupLength = groupBinding.length();
+    if (groupLength == 0) {
+      return new BindingTemplate(groupBinding, new String[] { fullBinding });
+    }
+    // the parts of the binding around the occurrences, count is only known after the scan
+    String[] parts = new String[4];
+    int partCount = 0;
+    int partStart = 0;
+    int from = 0;
+    int match;
+    while ((match = fullBinding.indexOf(groupBinding, from)) > -1) {
+      int matchEnd = match + groupLength;
+      if (isBoundary(fullBinding, match) && isBoundary(fullBinding, matchEnd)
+        && (matchEnd == fullBinding.length() || fullBinding.charAt(matchEnd) != '[')) {
+        if (partCount + 1 == parts.length) {
+          parts = Arrays.copyOf(parts, parts.length * 2);
+        }
+        parts[partCount++] = fullBinding.substring(partStart, match);
+        partStart = matchEnd;
+        from = matchEnd;
+      } else {
+        from = match + 1;
+      }
+    }
+    parts[partCount++] = (partStart == 0) ? fullBinding : fullBinding.substring(partStart);
+    return new BindingTemplate(groupBinding, Arrays.copyOf(parts, partCount));
+  }
+
+  /**
+   * Inserts the group index after every occurrence of the group binding
+   * @param groupIndex the group index
+   * @return the indexed binding
+   */
+  public String apply(int groupIndex) {
+    if (parts.length == 1) {
+      return parts[0];
+    }
+    String indexedGroup = groupBinding + '[' + groupIndex + ']';
+    StringBuilder binding = new StringBuilder(parts.length * indexedGroup.length() + 16);
+    binding.append(parts[0]);
+    for (int i = 1; i < parts.length; i++) {
+      binding.append(indexedGroup).append(parts[i]);
+    }
+    return binding.toString();
+  }
+
+  /**
+   * @return true if the binding does not contain the group binding, i.e. every row resolves to the same binding
+   */
+  public boolean isConstant() {
+    return parts.length == 1;
+  }
+
+  /**
+   * A regex word boundary, a word character on exactly one side of the position
+   */
+  private static boolean isBoundary(String text, int position) {
+    boolean before = position > 0 && isWordChar(text.codePointBefore(position));
+    boolean after = position < text.length() && isWordChar(text.codePointAt(position));
+    return before != after;
+  }
+
+  private static boolean isWordChar(int codePoint) {
+    return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+  }
+}
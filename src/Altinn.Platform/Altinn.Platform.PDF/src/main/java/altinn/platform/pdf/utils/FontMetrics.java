@@ -0,0 +1,196 @@
+package altinn.platform.pdf.utils;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.HorizontalMetricsTable;
+import org.apache.fontbox.ttf.OS2WindowsMetricsTable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Advance widths of the glyphs of a font, per code point, and the set of code points the font supports. Widths are read
+ * from the font program on first use and kept in a table shared by every document using the font, so measuring text is
+ * a table lookup per character.
+ *
+ * Widths are in glyph space (1/1000 em), rounded the same way PDFBox rounds the widths it embeds for the font, so that
+ * summing them gives exactly what {@link PDType0Font#getStringWidth(String)} returns.
+ */
+public class FontMetrics {
+
+  private static final Map<TrueTypeFont, FontMetrics> metrics = new WeakHashMap<>();
+
+  private static final int PAGE_BITS = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final float NOT_READ = Float.NaN;
+  private static final float NO_GLYPH = -1;
+
+  private final CmapLookup cmap;
+  private final HorizontalMetricsTable horizontalMetrics;
+  private final float scaling;
+  private final float capHeight;
+  private final BitSet supportedCodePoints;
+  private final AtomicReferenceArray<float[]> pages = new AtomicReferenceArray<>((Character.MAX_CODE_POINT + 1) >> PAGE_BITS);
+
+  private FontMetrics(TrueTypeFont trueTypeFont) throws IOException {
+    this.cmap = trueTypeFont.getUnicodeCmapLookup();
+    this.horizontalMetrics = trueTypeFont.getHorizontalMetrics();
+    this.scaling = 1000f / trueTypeFont.getHeader().getUnitsPerEm();
+    this.capHeight = readCapHeight(trueTypeFont.getOS2Windows());
+    this.supportedCodePoints = readSupportedCodePoints(trueTypeFont.getNumberOfGlyphs());
+  }
+
+  /**
+   * Gets the metrics of an embedded TrueType font
+   * @param font the font
+   * @return the metrics
+   * @throws IOException if the font program could not be read
+   * @throws IllegalArgumentException if the font is not backed by a TrueType font program
+   */
+  public static FontMetrics of(PDType0Font font) throws IOException {
+    if (!(font.getDescendantFont() instanceof PDCIDFontType2)) {
+      throw new IllegalArgumentException("Font " + font.getName() + " is not a TrueType font");
+    }
+    return of(((PDCIDFontType2) font.getDescendantFont()).getTrueTypeFont());
+  }
+
+  /**
+   * Gets the metrics of a font program, see {@link FontUtils#getTrueTypeFont(String)}
+   * @param trueTypeFont the font program
+   * @return the metrics
+   * @throws IOException if the font program could not be read
+   */
+  public static FontMetrics of(TrueTypeFont trueTypeFont) throws IOException {
+    synchronized (metrics) {
+      FontMetrics fontMetrics = metrics.get(trueTypeFont);
+      if (fontMetrics == null) {
+        fontMetrics = new FontMetrics(trueTypeFont);
+        metrics.put(trueTypeFont, fontMetrics);
+      }
+      return fontMetrics;
+    }
+  }
+
+  /**
+   * Gets the advance width of a code point
+   * @param codePoint the code point
+   * @return the width in glyph space
+   * @throws IllegalArgumentException if the font has no glyph for the code point, as PDFBox does when encoding it
+   */
+  public float getWidth(int codePoint) {
+    float width = lookup(codePoint);
+    if (width == NO_GLYPH) {
+      throw new IllegalArgumentException(String.format("No glyph for U+%04X in font", codePoint));
+    }
+    return width;
+  }
+
+  /**
+   * Checks if the font can render a code point, i.e. it has a glyph with a width for it
+   * @param codePoint the code point
+   * @return true if the code point is supported
+   */
+  public boolean isSupported(int codePoint) {
+    return codePoint >= 0 && supportedCodePoints.get(codePoint);
+  }
+
+  /**
+   * Gets the cap height of the font, the value PDFBox writes to the descriptor of the embedded font
+   * @return the cap height in glyph space
+   */
+  public float getCapHeight() {
+    return capHeight;
+  }
+
+  /**
+   * Gets the width of a part of a text
+   * @param text the text
+   * @param start the index of the first char
+   * @param end the index after the last char
+   * @return the width in glyph space
+   */
+  public float getStringWidth(CharSequence text, int start, int end) {
+    float width = 0;
+    int codePoint;
+    for (int i = start; i < end; i += Character.charCount(codePoint)) {
+      codePoint = Character.codePointAt(text, i);
+      width += getWidth(codePoint);
+    }
+    return width;
+  }
+
+  /**
+   * Gets the width of a text
+   * @param text the text
+   * @return the width in glyph space
+   */
+  public float getStringWidth(CharSequence text) {
+    return getStringWidth(text, 0, text.length());
+  }
+
+  private float lookup(int codePoint) {
+    if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+      return NO_GLYPH;
+    }
+    int pageIndex = codePoint >> PAGE_BITS;
+    float[] page = pages.get(pageIndex);
+    if (page == null) {
+      float[] newPage = new float[PAGE_SIZE];
+      Arrays.fill(newPage, NOT_READ);
+      page = pages.compareAndSet(pageIndex, null, newPage) ? newPage : pages.get(pageIndex);
+    }
+    int slot = codePoint & (PAGE_SIZE - 1);
+    float width = page[slot];
+    if (Float.isNaN(width)) {
+      // racing threads read the same value from the font, so the unsynchronized write is harmless
+      width = readWidth(codePoint);
+      page[slot] = width;
+    }
+    return width;
+  }
+
+  /**
+   * Reads the code points mapped by the cmap to a glyph with a width, the glyphs PDFBox can measure and draw
+   */
+  private BitSet readSupportedCodePoints(int numberOfGlyphs) {
+    BitSet supported = new BitSet();
+    for (int gid = 1; gid < numberOfGlyphs; gid++) {
+      List<Integer> codePoints = cmap.getCharCodes(gid);
+      if (codePoints == null || Math.round(horizontalMetrics.getAdvanceWidth(gid) * scaling) <= 0) {
+        continue;
+      }
+      for (int codePoint : codePoints) {
+        if (codePoint >= 0 && codePoint <= Character.MAX_CODE_POINT && cmap.getGlyphId(codePoint) == gid) {
+          supported.set(codePoint);
+        }
+      }
+    }
+    return supported;
+  }
+
+  private float readCapHeight(OS2WindowsMetricsTable os2) {
+    if (os2 == null) {
+      return 0;
+    }
+    if (os2.getVersion() >= 2) {
+      return os2.getCapHeight() * scaling;
+    }
+    // older tables have no cap height, estimated from the typographic ascender and descender
+    return (os2.getTypoAscender() + os2.getTypoDescender()) * scaling;
+  }
+
+  private float readWidth(int codePoint) {
+    int gid = cmap.getGlyphId(codePoint);
+    if (gid <= 0) {
+      return NO_GLYPH;
+    }
+    return Math.round(horizontalMetrics.getAdvanceWidth(gid) * scaling);
+  }
+}
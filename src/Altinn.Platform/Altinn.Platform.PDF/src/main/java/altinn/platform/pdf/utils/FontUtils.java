@@ -0,0 +1,154 @@
+package altinn.platform.pdf.utils;
+
+import altinn.platform.pdf.services.BasicLogger;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Process wide registry of the fonts used in the pdf. Each font file is read and parsed once, every document then gets a
+ * cheap subset embedding handle on top of the shared parsed font.
+ */
+public class FontUtils {
+
+  public static final String INTER_MEDIUM = "font/inter/Inter-Medium.ttf";
+  public static final String INTER_BOLD = "font/inter/Inter-Bold.ttf";
+
+  private static final Map<String, RegisteredFont> fonts = new ConcurrentHashMap<>();
+  private static final AtomicLong hitCount = new AtomicLong();
+  private static final AtomicLong missCount = new AtomicLong();
+
+  private FontUtils() {}
+
+  /**
+   * Loads a font for a given document. The font is subset embedded, and the parsed font program is shared between documents.
+   * @param document the document the font is used in
+   * @param fontPath the class path of the font file
+   * @return the font
+   * @throws IOException if the font file could not be read
+   */
+  public static PDType0Font loadFont(PDDocument document, String fontPath) throws IOException {
+    // The shared TrueTypeFont is not registered for closing on the document, so closing the document leaves it intact.
+    return PDType0Font.load(document, getTrueTypeFont(fontPath), true);
+  }
+
+  /**
+   * Gets the parsed font program for a given font file, reading and parsing the file on first use.
+   * @param fontPath the class path of the font file
+   * @return the parsed font
+   * @throws IOException if the font file could not be read
+   */
+  public static TrueTypeFont getTrueTypeFont(String fontPath) throws IOException {
+    RegisteredFont font = fonts.get(fontPath);
+    if (font != null) {
+      hitCount.incrementAndGet();
+      return font.trueTypeFont;
+    }
+    return registerFont(fontPath).trueTypeFont;
+  }
+
+  /**
+   * Reads and parses the fonts used in the pdf, so that the first request does not have to.
+   */
+  public static void initializeFonts() throws IOException {
+    getTrueTypeFont(INTER_MEDIUM);
+    getTrueTypeFont(INTER_BOLD);
+  }
+
+  /**
+   * Gets the number of font requests served from the registry
+   * @return the hit count
+   */
+  public static long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Gets the number of font requests which had to read and parse the font file
+   * @return the miss count
+   */
+  public static long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Gets the number of fonts held by the registry
+   * @return the font count
+   */
+  public static int getFontCount() {
+    return fonts.size();
+  }
+
+  /**
+   * Gets an estimate of the heap held by the registry. The parsed font keeps the font file in memory, so the size of the
+   * font files is used as the estimate.
+   * @return the estimated heap usage in bytes
+   */
+  public static long getEstimatedHeapUsage() {
+    long size = 0;
+    for (RegisteredFont font : fonts.values()) {
+      size += font.size;
+    }
+    return size;
+  }
+
+  private static synchronized RegisteredFont registerFont(String fontPath) throws IOException {
+    RegisteredFont font = fonts.get(fontPath);
+    if (font != null) {
+      // registered by another thread while we waited for the lock
+      hitCount.incrementAndGet();
+      return font;
+    }
+    missCount.incrementAndGet();
+    byte[] bytes;
+    try (InputStream inputStream = FontUtils.class.getClassLoader().getResourceAsStream(fontPath)) {
+      if (inputStream == null) {
+        throw new FileNotFoundException("Could not find font " + fontPath);
+      }
+      bytes = inputStream.readAllBytes();
+    }
+    TrueTypeFont trueTypeFont = new TTFParser().parse(new ByteArrayInputStream(bytes));
+    readTables(trueTypeFont);
+    font = new RegisteredFont(trueTypeFont, bytes.length);
+    fonts.put(fontPath, font);
+    BasicLogger.log(Level.INFO, "Registered font " + fontPath + " (" + bytes.length + " bytes)");
+    return font;
+  }
+
+  /**
+   * Tables are read lazily by fontbox. Reads the tables used when embedding up front, so that concurrent documents only
+   * read from the parsed font.
+   */
+  private static void readTables(TrueTypeFont trueTypeFont) throws IOException {
+    trueTypeFont.getHeader();
+    trueTypeFont.getHorizontalHeader();
+    trueTypeFont.getHorizontalMetrics();
+    trueTypeFont.getMaximumProfile();
+    trueTypeFont.getNaming();
+    trueTypeFont.getOS2Windows();
+    trueTypeFont.getPostScript();
+    trueTypeFont.getIndexToLocation();
+    trueTypeFont.getGlyph();
+    trueTypeFont.getUnicodeCmapLookup();
+  }
+
+  private static class RegisteredFont {
+    private final TrueTypeFont trueTypeFont;
+    private final long size;
+
+    private RegisteredFont(TrueTypeFont trueTypeFont, long size) {
+      this.trueTypeFont = trueTypeFont;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package altinn.platform.pdf.utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * A flat index of the form data, streamed from the xml in one pass over the data model. Maps every element's fully
+ * indexed path, e.g. "a[0].b[2].c[0]", to its value, and every group's indexed parent path plus name, e.g. "a[0].b", to
+ * its number of occurrences. Paths are normalized the same way bindings are matched, see {@link BindingPath}.
+ */
+public class FormDataIndex {
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+  private final Map<String, String> values = new HashMap<>();
+  private final Map<String, Integer> counts = new HashMap<>();
+  private final Map<String, String> valueKeys = new ConcurrentHashMap<>();
+  private final Map<String, String> countKeys = new ConcurrentHashMap<>();
+
+  private FormDataIndex() {}
+
+  /**
+   * Builds the index straight from the form data xml, without building a DOM. Only the values of the given bindings are
+   * kept, group counts are kept for all elements.
+   * @param xml the form data xml
+   * @param bindings the normalized, non-indexed bindings to keep values for, see {@link BindingPath#normalizeBinding(String)}.
+   *                 All values are kept if null.
+   * @param valueFilter filter applied to every kept value
+   * @return the index
+   * @throws XMLStreamException if the xml is malformed
+   */
+  public static FormDataIndex read(Reader xml, Set<String> bindings, UnaryOperator<String> valueFilter) throws XMLStreamException {
+    FormDataIndex index = new FormDataIndex();
+    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(xml);
+    try {
+      Deque<StreamedElement> elements = new ArrayDeque<>();
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            StreamedElement parent = elements.peek();
+            if (parent == null) {
+              // the root element is not part of the bindings
+              elements.push(new StreamedElement("", "", false));
+              break;
+            }
+            parent.textClosed = true;
+            String name = BindingPath.normalizeName(getQualifiedName(reader));
+            int occurrence = parent.occurrences.merge(name, 1, Integer::sum) - 1;
+            String binding = appendSegment(parent.binding, name);
+            boolean keepValue = bindings == null || bindings.contains(binding);
+            elements.push(new StreamedElement(appendSegment(parent.path, name) + "[" + occurrence + "]", binding, keepValue));
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            StreamedElement current = elements.peek();
+            if (current != null && current.text != null && !current.textClosed) {
+              current.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            break;
+          case XMLStreamConstants.COMMENT:
+          case XMLStreamConstants.PROCESSING_INSTRUCTION:
+            if (elements.peek() != null) {
+              elements.peek().textClosed = true;
+            }
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            StreamedElement element = elements.pop();
+            if (element.text != null) {
+              index.values.put(element.path, valueFilter.apply(element.text.toString()));
+            }
+            element.occurrences.forEach((childName, count) -> index.counts.put(appendSegment(element.path, childName), count));
+            break;
+          default:
+            break;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return index;
+  }
+
+  /**
+   * Gets the value for a data binding
+   * @param binding the data binding
+   * @return the value, or empty string if not defined
+   */
+  public String getValue(String binding) {
+    String key = valueKeys.computeIfAbsent(binding, b -> toKey(BindingPath.compile(b), true));
+    String value = values.get(key);
+    return (value != null) ? value : "";
+  }
+
+  /**
+   * Gets the number of occurrences of a group. Indices on the parent segments select the parent occurrence, the index
+   * on the last segment is ignored.
+   * @param groupBinding the group data binding
+   * @return the number of occurrences, 0 if not present
+   */
+  public int getCount(String groupBinding) {
+    String key = countKeys.computeIfAbsent(groupBinding, b -> toKey(BindingPath.compile(b), false));
+    return counts.getOrDefault(key, 0);
+  }
+
+  private static class StreamedElement {
+    private final String path;
+    private final String binding;
+    private final StringBuilder text;
+    private final Map<String, Integer> occurrences = new HashMap<>();
+    private boolean textClosed;
+
+    private StreamedElement(String path, String binding, boolean keepValue) {
+      this.path = path;
+      this.binding = binding;
+      this.text = keepValue ? new StringBuilder() : null;
+    }
+  }
+
+  /**
+   * The element name including any prefix, matching the node names of a non namespace aware DOM
+   */
+  private static String getQualifiedName(XMLStreamReader reader) {
+    String prefix = reader.getPrefix();
+    return (prefix == null || prefix.isEmpty()) ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  private static String appendSegment(String path, String name) {
+    return path.isEmpty() ? name : path + "." + name;
+  }
+
+  private static String toKey(BindingPath path, boolean indexLastSegment) {
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < path.size(); i++) {
+      if (i > 0) {
+        key.append('.');
+      }
+      key.append(path.getName(i));
+      if (indexLastSegment || i < path.size() - 1) {
+        key.append('[').append(path.getIndex(i)).append(']');
+      }
+    }
+    return key.toString();
+  }
+}
@@ -1,25 +1,29 @@
 package altinn.platform.pdf.utils;
 
 import altinn.platform.pdf.models.FormLayoutElement;
+import altinn.platform.pdf.models.TextResourceElement;
+import altinn.platform.pdf.models.TextResourceVariableElement;
+import altinn.platform.pdf.models.TextResources;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import java.io.FilterReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class FormUtils {
@@ -30,19 +34,14 @@ public class FormUtils {
   /**
    * Returns the data data for a given data binding
    * @param key the data binding key
-   * @param formData the data data
+   * @param formData the indexed data data
    * @return the connected data data, or empty string if not defined
    */
-  public static String getFormDataByKey(String key, Document formData) {
+  public static String getFormDataByKey(String key, FormDataIndex formData) {
     if (key == null || formData == null) {
       return "";
     }
-    if (key.contains(".value")) {
-      key = key.replace(".value", "");
-    }
-    String[] keySplit = key.split(Pattern.quote("."));
-    Element rootElement = formData.getDocumentElement();
-    return getValueOfEndNode(rootElement, keySplit, 0);
+    return formData.getValue(key);
   }
 
   /**
@@ -137,16 +136,18 @@ public class FormUtils {
   }
 
   /**
-   * Setup repeating groups. Finds the number of iterations for a given group in the by looking at how many iterations the data model binding has in the form data
+   * Setup repeating groups. Finds the number of iterations for a given group in the by looking at how many iterations the data model binding has in the form data.
+   * Only the groups that are not children of other groups are set up, the count of a nested group depends on the row of
+   * its parent and is looked up for each row as it is laid out.
    * @param layout the form layout
-   * @param formData the form data
-   * @return a form layout list where the group counts have been initialized
+   * @param formData the indexed form data
+   * @return copies of the repeating groups where the group counts have been initialized
    */
-  public static List<FormLayoutElement> setupRepeatingGroups(List<FormLayoutElement> layout, Document formData) {
-    List<FormLayoutElement> initiated = new ArrayList<>();
+  public static List<FormLayoutElement> setupRepeatingGroups(List<FormLayoutElement> layout, FormDataIndex formData) {
     if (layout == null || formData == null) {
-      return initiated;
+      return new ArrayList<>();
     }
+    List<FormLayoutElement> initiated = new ArrayList<>();
 
     List<FormLayoutElement> groups = layout.stream().filter(formLayoutElement -> formLayoutElement.getType().equalsIgnoreCase(GROUP_NAME)).collect(Collectors.toList());
     // filter away groups that should be rendered as child groups
@@ -157,34 +158,31 @@ public class FormUtils {
 
     filtered.forEach(formLayoutElement -> {
       if (formLayoutElement.getType().equalsIgnoreCase(GROUP_NAME)) {
-        String parentGroupBinding = formLayoutElement.getDataModelBindings().get(GROUP_NAME);
-        formLayoutElement.setCount(getGroupCount(parentGroupBinding, formData));
-        List<FormLayoutElement> groupChildren = getChildGroups(formLayoutElement, layout);
-        initiated.add(formLayoutElement);
-        if (!groupChildren.isEmpty()) {
-          groupChildren.forEach(groupChild -> {
-            for (int i = 0; i < formLayoutElement.getCount(); i ++) {
-              FormLayoutElement copy = new FormLayoutElement();
-              copy.setType(GROUP_NAME);
-              copy.setId(groupChild.getId() + "-" + i);
-              copy.setChildren(groupChild.getChildren());
-              HashMap<String, String> copyDataModelBindings = new HashMap<>();
-              String childGroupBinding = groupChild.getDataModelBindings().get(GROUP_NAME);
-              String indexedChildGroupBinding = childGroupBinding.replace(parentGroupBinding, parentGroupBinding + "[" + i + "]");
-              copyDataModelBindings.put(GROUP_NAME, indexedChildGroupBinding);
-              copy.setDataModelBindings(copyDataModelBindings);
-              copy.setCount(getGroupCount(indexedChildGroupBinding, formData));
-              if (copy.getCount() > 0) {
-                initiated.add(copy);
-              }
-            }
-          });
-        }
+        String groupBinding = formLayoutElement.getDataModelBindings().get(GROUP_NAME);
+        // the layout itself is left untouched, so it can be shared
+        initiated.add(copyGroup(formLayoutElement, getGroupCount(groupBinding, formData)));
       }
     });
     return initiated;
   }
 
+  private static FormLayoutElement copyGroup(FormLayoutElement group, int count) {
+    return new FormLayoutElement(
+      group.getType(),
+      group.getId(),
+      group.getDataModelBindings(),
+      group.getTextResourceBindings(),
+      group.getOptionsId(),
+      group.getOptions(),
+      group.getSource(),
+      group.isSimplified(),
+      group.getChildren(),
+      count,
+      group.getMaxCount(),
+      group.getDataTypeIds(),
+      group.getEdit());
+  }
+
   /**
    * finds child groups of a given group
    * @param group the group
@@ -208,73 +206,167 @@ public class FormUtils {
   /**
    * Gets the number of repetitions a given group has in the form data
    * @param group the group
-   * @param formData the form data
+   * @param formData the indexed form data
    * @return number of repetitions for a given group
    */
-  public static int getGroupCount(String group, Document formData) {
+  public static int getGroupCount(String group, FormDataIndex formData) {
     if (group == null || formData == null) {
       return 0;
     }
-
-    int bracketIndex = group.indexOf("[");
-    if (bracketIndex > -1) {
-      int parentGroupIndex = Integer.parseInt(group.substring(bracketIndex + 1 , bracketIndex + 2));
-      String[] split = group.split(Pattern.quote("."));
-      String groupName = split[split.length -1];
-      String parentGroup = "";
-      for (String s: split) {
-        if (s.contains("[")) {
-          parentGroup = s.replace("[" + parentGroupIndex + "]", "");
-        }
-      }
-      NodeList groups = formData.getElementsByTagName(parentGroup);
-      NodeList children = groups.item(parentGroupIndex).getChildNodes();
-      int count = 0;
-      for (int i = 0; i < children.getLength(); i++) {
-        if (children.item(i).getNodeName().equals(groupName)) {
-          count ++;
-        }
-      }
-      return count;
-    }
-    else {
-      String[] split = group.split(Pattern.quote("."));
-      return formData.getElementsByTagName(split[split.length - 1]).getLength();
-    }
+    return formData.getCount(group);
   }
 
   /**
    * Injects the group index marker [i]
    * behind the group binding in the string representing the full binding.
+   * Already indexed occurrences of the group are left as they are. When the same binding is indexed for many rows,
+   * compile a {@link BindingTemplate} once instead.
    * **/
   public static String setGroupIndexForBinding(String fullBinding, String groupBinding, int groupIndex)
   {
-    // escape `[` and ']' to not interfere with the regex match pattern
-    groupBinding = groupBinding.replaceAll("[\\[|\\]]", "\\\\$0");
+    return BindingTemplate.compile(fullBinding, groupBinding).apply(groupIndex);
+  }
 
-    // Excluding relevant end delimiters is important to not replace an already indexed group property
-    String pattern = String.format("\\b%s\\b(?!\\[)", groupBinding);
 
-    // using replaceAll to get full regex support
-    return fullBinding.replaceAll(pattern, groupBinding + '[' + groupIndex + ']');
+  /**
+   * Finds the data bindings referenced by the layouts and text resources, i.e. the form data values needed to render
+   * the pdf
+   * @param layouts the form layouts
+   * @param textResources the text resources
+   * @return the referenced bindings, normalized with {@link BindingPath#normalizeBinding(String)}
+   */
+  public static Set<String> getReferencedBindings(Collection<List<FormLayoutElement>> layouts, TextResources textResources) {
+    Set<String> bindings = new HashSet<>();
+    for (List<FormLayoutElement> layout : layouts) {
+      if (layout == null) {
+        continue;
+      }
+      for (FormLayoutElement element : layout) {
+        if (element.getDataModelBindings() != null) {
+          element.getDataModelBindings().values().stream()
+            .filter(Objects::nonNull)
+            .forEach(binding -> bindings.add(BindingPath.normalizeBinding(binding)));
+        }
+        if (element.getSource() != null && element.getSource().getValue() != null) {
+          bindings.add(BindingPath.normalizeBinding(element.getSource().getValue()));
+        }
+      }
+    }
+    if (textResources != null && textResources.getResources() != null) {
+      for (TextResourceElement resource : textResources.getResources()) {
+        if (resource.getVariables() == null) {
+          continue;
+        }
+        for (TextResourceVariableElement variable : resource.getVariables()) {
+          if (variable.getKey() != null && variable.getDataSource() != null && variable.getDataSource().startsWith("dataModel")) {
+            bindings.add(BindingPath.normalizeBinding(variable.getKey()));
+          }
+        }
+      }
+    }
+    return bindings;
   }
 
+  /**
+   * Reads the base 64 encoded data xml straight into a form data index, without holding the decoded xml or a DOM in
+   * memory. Characters that are not allowed in xml are dropped before parsing.
+   * @param base64Data the base 64 encoded xml
+   * @param bindings the bindings to keep values for, all values are kept if null
+   * @param valueFilter filter applied to every kept value
+   * @return the indexed form data
+   * @throws XMLStreamException if the xml is malformed
+   */
+  public static FormDataIndex readFormData(String base64Data, Set<String> bindings, UnaryOperator<String> valueFilter) throws XMLStreamException {
+    InputStream decoded = Base64.getMimeDecoder().wrap(new AsciiInputStream(base64Data));
+    Reader xml = new XmlCharFilterReader(new InputStreamReader(decoded, StandardCharsets.UTF_8));
+    return FormDataIndex.read(xml, bindings, valueFilter);
+  }
 
   /**
-   * Parses the data xml file and creates a Document wrapper
-   * @param xml the xml string containing data
-   * @return a document wrapper for the xml file
-   * @throws ParserConfigurationException
-   * @throws IOException
-   * @throws SAXException
+   * Reads the characters of an ascii string, such as base 64 text, as bytes without copying the string. Url safe base 64
+   * is read as standard base 64, as commons-codec decoded both
    */
-  public static Document parseXml(String xml) throws ParserConfigurationException, IOException, SAXException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-    DocumentBuilder builder = factory.newDocumentBuilder();
-    return builder.parse(new InputSource(new StringReader(xml)));
+  private static class AsciiInputStream extends InputStream {
+    private final String text;
+    private int position;
+
+    AsciiInputStream(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public int read() {
+      return (position < text.length()) ? toStandardAlphabet(text.charAt(position++)) : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (position >= text.length()) {
+        return -1;
+      }
+      int count = Math.min(length, text.length() - position);
+      for (int i = 0; i < count; i++) {
+        buffer[offset + i] = (byte) toStandardAlphabet(text.charAt(position++));
+      }
+      return count;
+    }
+
+    /**
+     * Maps the url safe alphabet to the standard one, the mime decoder would skip '-' and '_'
+     */
+    private static int toStandardAlphabet(char c) {
+      if (c == '-') {
+        return '+';
+      }
+      if (c == '_') {
+        return '/';
+      }
+      return c & 0xFF;
+    }
   }
-}
 
+  /**
+   * Drops control characters that are not allowed in xml 1.0, so that they do not fail the parsing
+   */
+  private static class XmlCharFilterReader extends FilterReader {
+
+    XmlCharFilterReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c;
+      do {
+        c = super.read();
+      } while (c != -1 && !isAllowed((char) c));
+      return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      int read;
+      do {
+        read = super.read(buffer, offset, length);
+        if (read <= 0) {
+          return read;
+        }
+        int kept = offset;
+        for (int i = offset; i < offset + read; i++) {
+          if (isAllowed(buffer[i])) {
+            buffer[kept++] = buffer[i];
+          }
+        }
+        read = kept - offset;
+      } while (read == 0);
+      return read;
+    }
+
+    private static boolean isAllowed(char c) {
+      return c >= 0x20 ? (c != 0xFFFE && c != 0xFFFF) : (c == '\t' || c == '\n' || c == '\r');
+    }
+  }
+}
@@ -3,7 +3,6 @@ package altinn.platform.pdf.utils;
 import altinn.platform.pdf.models.*;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.w3c.dom.Document;
 
 import java.io.IOException;
 import java.util.List;
@@ -29,24 +28,65 @@ public class LayoutUtils {
    * @return
    * @throws IOException
    */
-  public static float getElementHeight(FormLayoutElement element, PDType0Font font, float fontSize, float width, float leading, float textMargin, TextResources textResources, Document formData, Instance instance) throws IOException {
+  public static float getElementHeight(FormLayoutElement element, PDType0Font font, float fontSize, float width, float leading, float textMargin, TextResources textResources, FormDataIndex formData, Instance instance) throws IOException {
+    return getElementHeight(element, font, fontSize, width, leading, textMargin, textResources, formData, instance, new TextLayoutCache(), BindingContext.ROOT);
+  }
+
+  /**
+   * Calculates the height of a given element, wrapping the texts through the given cache so the wrapped lines can be
+   * reused when the element is drawn
+   * @param element the element
+   * @param font the font used
+   * @param fontSize the font size
+   * @param width the width
+   * @param leading the leading
+   * @param textMargin the text margin
+   * @param textResources the text resources
+   * @param formData the form data
+   * @param instance the instance metadata
+   * @param textLayouts the text layout cache of the pdf
+   * @param context the repeating group row the element is rendered in
+   * @return
+   * @throws IOException
+   */
+  public static float getElementHeight(FormLayoutElement element, PDType0Font font, float fontSize, float width, float leading, float textMargin, TextResources textResources, FormDataIndex formData, Instance instance, TextLayoutCache textLayouts, BindingContext context) throws IOException {
+    return getElementHeight(element, FontMetrics.of(font), fontSize, width, leading, textMargin, textResources, formData, instance, textLayouts, context);
+  }
+
+  /**
+   * Calculates the height of a given element from the metrics of its font, so it can be measured without embedding the
+   * font, see {@link #getElementHeight(FormLayoutElement, PDType0Font, float, float, float, float, TextResources, FormDataIndex, Instance, TextLayoutCache, BindingContext)}
+   * @param element the element
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @param width the width
+   * @param leading the leading
+   * @param textMargin the text margin
+   * @param textResources the text resources
+   * @param formData the form data
+   * @param instance the instance metadata
+   * @param textLayouts the text layout cache of the pdf
+   * @param context the repeating group row the element is rendered in
+   * @return the height of the element
+   */
+  public static float getElementHeight(FormLayoutElement element, FontMetrics metrics, float fontSize, float width, float leading, float textMargin, TextResources textResources, FormDataIndex formData, Instance instance, TextLayoutCache textLayouts, BindingContext context) {
     float height = 0;
     TextResourceBindings textResourceBindings = element.getTextResourceBindings();
     if (textResourceBindings.getTitle() != null && !textResourceBindings.getTitle().isEmpty()) {
       String title = TextUtils.getTextResourceByKey(textResourceBindings.getTitle(), textResources);
-      height += TextUtils.getHeightNeededForText(title, font, fontSize, width);
+      height += textLayouts.getHeightNeededForText(title, metrics, fontSize, width);
       height += textMargin;
     }
 
     if (textResourceBindings.getDescription() != null && !textResourceBindings.getDescription().isEmpty()) {
       String description = TextUtils.getTextResourceByKey(textResourceBindings.getDescription(), textResources);
-      height += TextUtils.getHeightNeededForText(description, font, fontSize, width);
+      height += textLayouts.getHeightNeededForText(description, metrics, fontSize, width);
       height += textMargin;
     }
 
     if (textResourceBindings.getBody() != null && !textResourceBindings.getBody().isEmpty()) {
       String body = TextUtils.getTextResourceByKey(textResourceBindings.getBody(), textResources);
-      height += TextUtils.getHeightNeededForText(body, font, fontSize, width);
+      height += textLayouts.getHeightNeededForText(body, metrics, fontSize, width);
       height += textMargin;
     }
 
@@ -58,7 +98,7 @@ public class LayoutUtils {
     if (element.getType().equalsIgnoreCase("fileupload")) {
       List<String> lines = InstanceUtils.getAttachmentsByComponentId(element.getId(), instance);
       for (String line: lines) {
-        height += TextUtils.getHeightNeededForText(line, font, fontSize, width);
+        height += textLayouts.getHeightNeededForText(line, metrics, fontSize, width);
         height += (leading - fontSize);
       }
     } else if (element.getType().equalsIgnoreCase("fileuploadwithtag")) {
@@ -73,7 +113,7 @@ public class LayoutUtils {
           else
             line += tag;
         }
-        height += TextUtils.getHeightNeededForText(line, font, fontSize, width);
+        height += textLayouts.getHeightNeededForText(line, metrics, fontSize, width);
         height += (leading - fontSize);
       }
     } else if (element.getType().equalsIgnoreCase("attachmentlist")) {
@@ -83,12 +123,12 @@ public class LayoutUtils {
       }
 
       for (String line: lines) {
-        height += TextUtils.getHeightNeededForText(line, font, fontSize, width);
+        height += textLayouts.getHeightNeededForText(line, metrics, fontSize, width);
         height += (leading - fontSize);
       }
     } else {
-      String value = FormUtils.getFormDataByKey(element.getDataModelBindings().get("simpleBinding"), formData);
-      float rectHeight = TextUtils.getHeightNeededForTextBox(value, font, fontSize, width, leading);
+      String value = FormUtils.getFormDataByKey(context.resolve(element.getDataModelBindings().get("simpleBinding")), formData);
+      float rectHeight = textLayouts.getHeightNeededForTextBox(value, metrics, fontSize, width, leading);
       PDRectangle rect = new PDRectangle(0, 0, width, rectHeight);
       height += rect.getHeight();
     }
@@ -1,5 +1,7 @@
 package altinn.platform.pdf.utils;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -21,4 +23,34 @@ public class MapUtils {
 
     return innerValue;
   }
+
+  /**
+   * Gets the label of a value from an inverted option set, see {@link #invert(Map)}
+   * @param labelsByValue the labels of the option set keyed by value, or null
+   * @param innerValue the value
+   * @return the label of the value, or the value itself if the option set has no such value
+   */
+  public static String getLabelFromValue(Map<String, String> labelsByValue, String innerValue) {
+    if (labelsByValue != null && labelsByValue.containsKey(innerValue)) {
+      return labelsByValue.get(innerValue);
+    }
+    return innerValue;
+  }
+
+  /**
+   * Inverts an option set, mapping each value to its label. A value with several labels keeps the first one, the one
+   * found by {@link #getLabelFromValue(Map, String, String)}.
+   * @param options the option set keyed by label, or null
+   * @return the labels keyed by value, empty if there are no options
+   */
+  public static Map<String, String> invert(Map<String, String> options) {
+    if (options == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> labelsByValue = new HashMap<>(options.size() * 4 / 3 + 1);
+    for (Map.Entry<String, String> entry : options.entrySet()) {
+      labelsByValue.putIfAbsent(entry.getValue(), entry.getKey());
+    }
+    return labelsByValue;
+  }
 }
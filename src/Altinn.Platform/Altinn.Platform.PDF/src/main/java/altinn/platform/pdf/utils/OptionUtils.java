@@ -1,24 +1,21 @@
 package altinn.platform.pdf.utils;
 
 import altinn.platform.pdf.models.*;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class OptionUtils {
 
   private OptionUtils() {}
 
-  public static List<Option> getOptionsFromOptionSource(OptionSource source, FormLayoutElement group, Document data, TextResources resources) {
+  public static List<Option> getOptionsFromOptionSource(OptionSource source, FormLayoutElement group, FormDataIndex data, TextResources resources) {
     List<Option> options = new ArrayList<>();
-    TextResourceElement label =
-      resources
-        .getResources()
-        .stream()
-        .filter(e -> e.getId().equals(source.getLabel()))
-        .findFirst()
-        .orElseThrow();
+    TextResourceElement label = resources.getResourceById(source.getLabel());
+    if (label == null) {
+      throw new NoSuchElementException("Text resource " + source.getLabel() + " is not defined");
+    }
 
     List<String> replaceValues = new ArrayList<>();
 
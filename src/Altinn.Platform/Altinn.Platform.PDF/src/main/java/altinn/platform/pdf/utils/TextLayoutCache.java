@@ -0,0 +1,178 @@
+package altinn.platform.pdf.utils;
+
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Per pdf cache of wrapped text. Every text block is measured when the element height is estimated and again when it is
+ * laid out, the cache makes sure it is only wrapped once. Texts are keyed by the metrics of their font, so the embedded
+ * font and its font program share entries. Not thread safe, each generation should use its own cache.
+ */
+public class TextLayoutCache {
+
+  private final Map<Key, TextLayout> layouts = new HashMap<>();
+  private int hitCount;
+  private int missCount;
+
+  /**
+   * Splits a text into lines, see {@link TextUtils#splitTextToLines(String, PDType0Font, float, float)}
+   * @param text the text
+   * @param font the font used
+   * @param fontSize the font size
+   * @param width the width of the page
+   * @return an unmodifiable list of lines
+   */
+  public List<String> splitTextToLines(String text, PDType0Font font, float fontSize, float width) throws IOException {
+    return splitTextToLines(text, FontMetrics.of(font), fontSize, width);
+  }
+
+  /**
+   * Splits a text into lines, see {@link TextUtils#splitTextToLines(String, FontMetrics, float, float)}
+   * @param text the text
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @param width the width of the page
+   * @return an unmodifiable list of lines
+   */
+  public List<String> splitTextToLines(String text, FontMetrics metrics, float fontSize, float width) {
+    return getLayout(text, metrics, fontSize, width).lines;
+  }
+
+  /**
+   * Gets the height needed for a text, see {@link TextUtils#getHeightNeededForText(String, PDType0Font, float, float)}
+   * @param text the text
+   * @param font the font used
+   * @param fontSize the font size
+   * @param width the width of the page
+   * @return the height needed to fit the text
+   */
+  public float getHeightNeededForText(String text, PDType0Font font, float fontSize, float width) throws IOException {
+    return getHeightNeededForText(text, FontMetrics.of(font), fontSize, width);
+  }
+
+  /**
+   * Gets the height needed for a text, without the embedded font
+   * @param text the text
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @param width the width of the page
+   * @return the height needed to fit the text
+   */
+  public float getHeightNeededForText(String text, FontMetrics metrics, float fontSize, float width) {
+    return getLayout(text, metrics, fontSize, width).height;
+  }
+
+  /**
+   * Gets the height needed for a multi line text box, see
+   * {@link TextUtils#getHeightNeededForTextBox(String, PDType0Font, float, float, float)}
+   * @param text the text
+   * @param font the font
+   * @param fontSize the font size
+   * @param width the width
+   * @param leading the leading space
+   * @return the height need in pixels
+   */
+  public float getHeightNeededForTextBox(String text, PDType0Font font, float fontSize, float width, float leading) throws IOException {
+    return getHeightNeededForTextBox(text, FontMetrics.of(font), fontSize, width, leading);
+  }
+
+  /**
+   * Gets the height needed for a multi line text box, without the embedded font
+   * @param text the text
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @param width the width
+   * @param leading the leading space
+   * @return the height need in pixels
+   */
+  public float getHeightNeededForTextBox(String text, FontMetrics metrics, float fontSize, float width, float leading) {
+    float textHeight = getHeightNeededForText(text, metrics, fontSize, width);
+    float leadingDiff = (leading - fontSize);
+    return textHeight + leadingDiff*2;
+  }
+
+  /**
+   * @return the number of lookups served from the cache
+   */
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of lookups that had to wrap the text
+   */
+  public int getMissCount() {
+    return missCount;
+  }
+
+  private TextLayout getLayout(String text, FontMetrics metrics, float fontSize, float width) {
+    Key key = new Key(text, metrics, fontSize, width);
+    TextLayout layout = layouts.get(key);
+    if (layout != null) {
+      hitCount++;
+      return layout;
+    }
+    missCount++;
+    List<String> lines = TextUtils.splitTextToLines(text, metrics, fontSize, width);
+    float height = (text == null || text.length() == 0)
+      ? TextUtils.getFontHeight(metrics, fontSize)
+      : TextUtils.getHeightNeededForLines(lines.size(), metrics, fontSize);
+    layout = new TextLayout(Collections.unmodifiableList(lines), height);
+    layouts.put(key, layout);
+    return layout;
+  }
+
+  private static class TextLayout {
+    private final List<String> lines;
+    private final float height;
+
+    private TextLayout(List<String> lines, float height) {
+      this.lines = lines;
+      this.height = height;
+    }
+  }
+
+  private static class Key {
+    private final String text;
+    private final FontMetrics metrics;
+    private final float fontSize;
+    private final float width;
+
+    private Key(String text, FontMetrics metrics, float fontSize, float width) {
+      this.text = text;
+      this.metrics = metrics;
+      this.fontSize = fontSize;
+      this.width = width;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      // metrics are shared per font program, so they are compared by identity
+      return metrics == other.metrics
+        && Float.compare(fontSize, other.fontSize) == 0
+        && Float.compare(width, other.width) == 0
+        && Objects.equals(text, other.text);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Objects.hashCode(text);
+      result = 31 * result + System.identityHashCode(metrics);
+      result = 31 * result + Float.hashCode(fontSize);
+      return 31 * result + Float.hashCode(width);
+    }
+  }
+}
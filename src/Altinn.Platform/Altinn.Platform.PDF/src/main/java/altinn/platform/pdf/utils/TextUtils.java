@@ -24,7 +24,8 @@ public class TextUtils {
   private static String appOwnerKey = "appOwner";
   private static String appNameKey = "appName";
   private static String oldAppNameKey = "ServiceName";
-  private static final List<Byte> ILLEGAL_CHAR_TYPES = List.of(Character.CONTROL, Character.FORMAT, Character.PRIVATE_USE, Character.SURROGATE, Character.UNASSIGNED);
+  private static final int ILLEGAL_CHAR_TYPES = 1 << Character.CONTROL | 1 << Character.FORMAT | 1 << Character.PRIVATE_USE
+    | 1 << Character.SURROGATE | 1 << Character.UNASSIGNED;
 
 
   private TextUtils() {}
@@ -39,12 +40,8 @@ public class TextUtils {
     if (textResources == null || textResources.getResources() == null) {
       return key;
     }
-    for (TextResourceElement resource: textResources.getResources()) {
-      if (resource.getId().equals(key)) {
-        return resource.getValue();
-      }
-    }
-    return key;
+    TextResourceElement resource = textResources.getResourceById(key);
+    return (resource != null) ? resource.getValue() : key;
   }
 
   /**
@@ -87,41 +84,51 @@ public class TextUtils {
     if (raw == null || raw.length() == 0) {
       return "";
     }
+    try {
+      return removeIllegalChars(raw, FontMetrics.of(font));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-    var builder = new StringBuilder(raw.length());
+  /**
+   * Removes illegal chars that pdf-generation does not handle, and chars the font has no glyph for
+   * @param raw the unfiltered string
+   * @param metrics the metrics of the font used for checking glyphs
+   * @return the filtered string, the same instance if nothing was removed
+   */
+  public static String removeIllegalChars(String raw, FontMetrics metrics) {
+    if (raw == null || raw.length() == 0) {
+      return "";
+    }
+
+    StringBuilder builder = null;
+    int keptFrom = 0;
     int codePoint;
-    for (int offset = 0; offset < raw.length(); offset += Character.charCount(codePoint))
-    {
-        codePoint = raw.codePointAt(offset);
-        int characterType = Character.getType(codePoint);
-
-        if (ILLEGAL_CHAR_TYPES.contains((byte)characterType)) {
-          if (codePoint == 13 || codePoint == 10) { // newline characters are allowed
-            builder.append(Character.toChars(codePoint));
-          }
-        } else { // not illegal character, append if font can render glyph
-          builder.append(filterUsingFont(font, codePoint));
+    for (int offset = 0; offset < raw.length(); offset += Character.charCount(codePoint)) {
+      codePoint = raw.codePointAt(offset);
+      if (!isLegalChar(codePoint, metrics)) {
+        // copy the run of legal chars before this one, the builder is only needed once something is removed
+        if (builder == null) {
+          builder = new StringBuilder(raw.length());
         }
+        builder.append(raw, keptFrom, offset);
+        keptFrom = offset + Character.charCount(codePoint);
+      }
     }
 
-    return builder.toString();
+    if (builder == null) {
+      return raw;
+    }
+    return builder.append(raw, keptFrom, raw.length()).toString();
   }
 
-  /**
-   * Returns string for codePoint if supported by font, else returns empty string
-   * @param font the font used for checking glyphs
-   * @param codePoint the codePoint for the character to check
-   * @return the filtered string
-   */
-  private static String filterUsingFont(PDType0Font font, int codePoint) {
-    try {
-        String text = new String(Character.toChars(codePoint));
-        // Ugly hack for checking if text can be handled by font. Throws if glyph is missing.
-        float width = font.getStringWidth(text);
-        return (width > 0) ? text : "";
-    } catch (final Exception e) {
-        return "";
+  private static boolean isLegalChar(int codePoint, FontMetrics metrics) {
+    if ((ILLEGAL_CHAR_TYPES >> Character.getType(codePoint) & 1) != 0) {
+      return codePoint == 13 || codePoint == 10; // newline characters are allowed
     }
+    // not illegal character, legal if font can render glyph
+    return metrics.isSupported(codePoint);
   }
 
   /**
@@ -135,9 +142,32 @@ public class TextUtils {
       return fontHeight;
     }
     List<String> lines = splitTextToLines(text, font, fontSize, width);
-    int numberOfLines = lines.size();
+    return getHeightNeededForLines(lines.size(), font, fontSize);
+  }
+
+  /**
+   * Gets the height needed for a given number of wrapped lines based on the font and font size
+   * @param numberOfLines the number of lines
+   * @return the height needed to fit the lines
+   */
+  public static float getHeightNeededForLines(int numberOfLines, PDType0Font font, float fontSize) {
+    return getHeightNeededForLines(numberOfLines, getFontHeight(font, fontSize));
+  }
+
+  /**
+   * Gets the height needed for a given number of wrapped lines, see {@link #getHeightNeededForLines(int, PDType0Font, float)}
+   * @param numberOfLines the number of lines
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @return the height needed to fit the lines
+   */
+  public static float getHeightNeededForLines(int numberOfLines, FontMetrics metrics, float fontSize) {
+    return getHeightNeededForLines(numberOfLines, getFontHeight(metrics, fontSize));
+  }
+
+  private static float getHeightNeededForLines(int numberOfLines, float fontHeight) {
     float heightNeeded = numberOfLines * fontHeight;
-    if (lines.size() > 1) {
+    if (numberOfLines > 1) {
       // https://stackoverflow.com/a/17202929
       heightNeeded += ((numberOfLines - 1) * fontHeight * 0.865);
     }
@@ -170,44 +200,74 @@ public class TextUtils {
    * @return a list of lines
    */
   public static List<String> splitTextToLines(String text, PDType0Font font, float fontSize, float width) throws IOException {
+    if (text == null || text.length() == 0) {
+      return new ArrayList<>();
+    }
+    return splitTextToLines(text, FontMetrics.of(font), fontSize, width);
+  }
+
+  /**
+   * Splits a text string into suitable lines which will fit inside the pdf, see
+   * {@link #splitTextToLines(String, PDType0Font, float, float)}. Each line is measured in one pass, adding up the
+   * widths of its characters as the break point moves forward.
+   * @param text the text
+   * @param metrics the metrics of the font used
+   * @param fontSize the font size
+   * @param width the width of the page
+   * @return a list of lines
+   */
+  public static List<String> splitTextToLines(String text, FontMetrics metrics, float fontSize, float width) {
     List<String> lines = new ArrayList<>();
     if (text == null || text.length() == 0) {
       return lines;
     }
     for (String lineInText: text.split("\n")) {
+      // the remaining text of the line is lineInText[start, end)
+      int start = 0;
+      int end = lineInText.length();
       int lastSpace = -1;
-      while (lineInText.length() > 0) {
-        int spaceIndex = lineInText.indexOf(' ', lastSpace  + 1);
-        if (spaceIndex < 0) {
+      float lastSpaceWidth = 0;
+      int measured = 0;
+      float measuredWidth = 0;
+      while (start < end) {
+        int spaceIndex = lineInText.indexOf(' ', (lastSpace < 0) ? start : lastSpace + 1);
+        if (spaceIndex < 0 || spaceIndex > end) {
           // no spaces found => the line contains the whole word
-          spaceIndex = lineInText.length();
+          spaceIndex = end;
         }
-        String subString = lineInText.substring(0, spaceIndex);
-        float stringWidth = getStringWidth(subString, font, fontSize);
-        if (stringWidth > width) {
+        measuredWidth = addStringWidth(measuredWidth, lineInText, measured, spaceIndex, metrics);
+        measured = spaceIndex;
+        if (toPixels(measuredWidth, fontSize) > width) {
           if (lastSpace < 0) {
             lastSpace = spaceIndex;
+            lastSpaceWidth = measuredWidth;
           }
-          subString = lineInText.substring(0, lastSpace);
-          float subStringWidth = getStringWidth(subString, font, fontSize);
-          if (subStringWidth > width) {
+          String subString = lineInText.substring(start, lastSpace);
+          if (toPixels(lastSpaceWidth, fontSize) > width) {
             // the word is wider than the width, we need to split the word itself
-            List<String> splittedWord = splitWordToFitWidth(subString, font, fontSize, width);
-            for (String line: splittedWord) {
-              lines.add(line);
-            }
+            lines.addAll(splitWordToFitWidth(subString, metrics, fontSize, width));
           } else {
             lines.add(subString);
           }
-          lineInText = lineInText.substring(lastSpace).trim();
+          // continue with the rest of the line, trimmed
+          start = lastSpace;
+          while (start < end && lineInText.charAt(start) <= ' ') {
+            start++;
+          }
+          while (end > start && lineInText.charAt(end - 1) <= ' ') {
+            end--;
+          }
           lastSpace = -1;
+          measured = start;
+          measuredWidth = 0;
         }
-        else if (spaceIndex == lineInText.length()) {
-          lines.add(lineInText);
-          lineInText = "";
+        else if (spaceIndex == end) {
+          lines.add(lineInText.substring(start, end));
+          start = end;
         }
         else {
           lastSpace = spaceIndex;
+          lastSpaceWidth = measuredWidth;
         }
       }
     }
@@ -225,6 +285,16 @@ public class TextUtils {
     return (font.getFontDescriptor().getCapHeight() / 1000 * fontSize);
   }
 
+  /***
+   * Gets the font height in pixels, without the embedded font
+   * @param metrics the metrics of the font
+   * @param fontSize the font size
+   * @return the height
+   */
+  public static float getFontHeight(FontMetrics metrics, float fontSize) {
+    return (metrics.getCapHeight() / 1000 * fontSize);
+  }
+
   /***
    * Splits a word to the number if lines it needs to fit inside the given width
    * @param word the word
@@ -234,23 +304,43 @@ public class TextUtils {
    * @return a list of lines needed to fit word
    */
   public static List<String> splitWordToFitWidth(String word, PDType0Font font, float fontSize, float width) throws IOException {
-    List<String> lines = new ArrayList<>();
     if (word == null || font == null) {
+      return new ArrayList<>();
+    }
+    return splitWordToFitWidth(word, FontMetrics.of(font), fontSize, width);
+  }
+
+  /***
+   * Splits a word to the number if lines it needs to fit inside the given width, measuring each character once
+   * @param word the word
+   * @param metrics the metrics of the font
+   * @param fontSize the font size
+   * @param width the width
+   * @return a list of lines needed to fit word
+   */
+  public static List<String> splitWordToFitWidth(String word, FontMetrics metrics, float fontSize, float width) {
+    List<String> lines = new ArrayList<>();
+    if (word == null) {
       return lines;
     }
-    float wordWidth = getStringWidth(word, font, fontSize);
+    float wordWidth = toPixels(metrics.getStringWidth(word), fontSize);
     if (wordWidth < width) {
       lines.add(word);
       return lines;
     }
 
     int start = 0;
+    int measured = 0;
+    float subStringWidth = 0;
 
     for(int i = 2; i <= word.length(); i ++) {
-      String subString = word.substring(start, i); // inclusive, exclusive
-      if (getStringWidth(subString, font, fontSize) > width) {
+      // the width of word[start, i)
+      subStringWidth = addStringWidth(subStringWidth, word, measured, i, metrics);
+      measured = i;
+      if (toPixels(subStringWidth, fontSize) > width) {
         lines.add(word.substring(start, i));
         start = i;
+        subStringWidth = 0;
       }
       if (i == word.length()) {
         lines.add(word.substring(start, i));
@@ -269,7 +359,23 @@ public class TextUtils {
    * @throws IOException
    */
   public static float getStringWidth(String word, PDType0Font font, float fontSize) throws IOException {
-    return fontSize * font.getStringWidth(word) / 1000;
+    return toPixels(FontMetrics.of(font).getStringWidth(word), fontSize);
+  }
+
+  /**
+   * Adds the widths of text[from, to) to a width, char by char in the same order as the font sums a whole string
+   */
+  private static float addStringWidth(float width, String text, int from, int to, FontMetrics metrics) {
+    int codePoint;
+    for (int i = from; i < to; i += Character.charCount(codePoint)) {
+      codePoint = text.codePointAt(i);
+      width += metrics.getWidth(codePoint);
+    }
+    return width;
+  }
+
+  private static float toPixels(float glyphSpaceWidth, float fontSize) {
+    return fontSize * glyphSpaceWidth / 1000;
   }
 
   /**
@@ -0,0 +1,151 @@
+package altinn.platform.pdf.layout;
+
+import altinn.platform.pdf.models.FormLayout;
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.TextResources;
+import altinn.platform.pdf.utils.FontMetrics;
+import altinn.platform.pdf.utils.FontUtils;
+import altinn.platform.pdf.utils.FormDataIndex;
+import altinn.platform.pdf.utils.FormUtils;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.util.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutEngineTest {
+
+  /**
+   * The id of the first component of formLayoutNoGroups.json, laid out as the second layout
+   */
+  private static final String SECOND_LAYOUT_FIRST_ID = "9f4224c4-ec21-4547-836c-8349cb92acf7";
+
+  @Test
+  void test_plan_shouldStartEachLayoutOnANewPage() throws IOException, XMLStreamException {
+    LayoutEngine layoutEngine = createLayoutEngine();
+
+    PagePlan plan = layoutEngine.plan("Header", "Delivered by", Arrays.asList("Reference", "Date"), null);
+
+    List<PlacedComponent> firstPage = plan.getPages().get(0).getComponents();
+    assertEquals("header", firstPage.get(0).getId());
+    assertEquals("submittedBy", firstPage.get(1).getId());
+    assertFalse(firstPage.get(0).isLayoutComponent());
+    assertFalse(firstPage.get(1).isLayoutComponent());
+    assertTrue(plan.getPageCount() >= 2);
+    for (PagePlan.Page page : plan.getPages()) {
+      float y = Float.MAX_VALUE;
+      for (PlacedComponent component : page.getComponents()) {
+        // stacked components touch, the next one starts where the previous ended
+        assertTrue(component.getY() <= y);
+        y = component.getY() - component.getHeight();
+      }
+    }
+
+    // the first layout continues below the header, the second starts on a page of its own
+    PlacedComponent firstLayoutStart = firstPage.get(2);
+    // the first row of the repeating group opening formLayoutWithGroups.json
+    assertEquals("a1495e7d-d3ac-4e55-a459-1bc9d27fa792-0", firstLayoutStart.getId());
+    assertTrue(firstLayoutStart.isLayoutComponent());
+    assertTrue(firstLayoutStart.isNewPart());
+    PagePlan.Page secondLayoutPage = findPage(plan, SECOND_LAYOUT_FIRST_ID);
+    PlacedComponent secondLayoutStart = secondLayoutPage.getComponents().get(0);
+    assertEquals(SECOND_LAYOUT_FIRST_ID, secondLayoutStart.getId());
+    assertTrue(secondLayoutStart.isNewPart());
+    assertTrue(plan.getPages().indexOf(secondLayoutPage) > 0);
+  }
+
+  @Test
+  void test_plan_shouldBeTheSameInParallel() throws IOException, XMLStreamException {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      PagePlan sequential = createLayoutEngine().plan("Header", null, null, null);
+      PagePlan parallel = createLayoutEngine().plan("Header", null, null, executor);
+
+      assertEquals(getComponentIds(sequential), getComponentIds(parallel));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_plan_shouldLayOutTheRowsOfNestedGroupsWithinEachParentRow() throws IOException, XMLStreamException {
+    PagePlan plan = createLayoutEngine("/formLayout/formLayoutWithNestedGroups.json").plan("Header", null, null, null);
+
+    List<PlacedComponent> nestedRows = plan.getPages().stream()
+      .flatMap(page -> page.getComponents().stream())
+      .filter(component -> component.getId().startsWith("group2-child-"))
+      .collect(Collectors.toList());
+
+    // three nested rows in the first parent row, two in the second and none in the third
+    assertEquals(List.of("group2-child-0", "group2-child-1", "group2-child-2", "group2-child-0", "group2-child-1"),
+      nestedRows.stream().map(PlacedComponent::getId).collect(Collectors.toList()));
+    assertEquals(List.of("string 1", "string 2", "string 3", "string 1", "string 2"),
+      nestedRows.stream().map(LayoutEngineTest::getLastLine).collect(Collectors.toList()));
+  }
+
+  private LayoutEngine createLayoutEngine() throws IOException, XMLStreamException {
+    return createLayoutEngine("/formLayout/formLayoutWithGroups.json", "/formLayout/formLayoutNoGroups.json");
+  }
+
+  private LayoutEngine createLayoutEngine(String... layoutResources) throws IOException, XMLStreamException {
+    Gson gson = new Gson();
+    TreeMap<String, FormLayout> formLayouts = new TreeMap<>();
+    for (int i = 0; i < layoutResources.length; i++) {
+      formLayouts.put("page" + (i + 1), gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream(layoutResources[i])), FormLayout.class));
+    }
+    TextResources textResources = new TextResources();
+    textResources.setResources(new ArrayList<>());
+    PdfContext pdfContext = new PdfContext();
+    pdfContext.setFormLayouts(formLayouts);
+    pdfContext.setTextResources(textResources);
+    pdfContext.setInstance(new Instance());
+
+    String xml = IOUtils.toString(this.getClass().getResourceAsStream("/formData/repeatingGroupFormData.xml"));
+    FormDataIndex formData = FormUtils.readFormData(Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)), null, value -> value);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+    FontMetrics fontBold = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_BOLD));
+    return new LayoutEngine(pdfContext, formData, "nb", font, fontBold);
+  }
+
+  private PagePlan.Page findPage(PagePlan plan, String componentId) {
+    return plan.getPages().stream()
+      .filter(page -> page.getComponents().stream().anyMatch(component -> component.getId().equals(componentId)))
+      .findFirst()
+      .orElseThrow();
+  }
+
+  /**
+   * The last line of text of a component, the value of an input
+   */
+  private static String getLastLine(PlacedComponent component) {
+    String line = null;
+    for (PlacedItem item : component.getItems()) {
+      if (item instanceof PlacedText) {
+        List<String> lines = ((PlacedText) item).getLines();
+        line = lines.get(lines.size() - 1);
+      }
+    }
+    return line;
+  }
+
+  private List<List<String>> getComponentIds(PagePlan plan) {
+    return plan.getPages().stream()
+      .map(page -> page.getComponents().stream().map(PlacedComponent::getId).collect(Collectors.toList()))
+      .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,63 @@
+package altinn.platform.pdf.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GenerationExecutorTest {
+
+  @Test
+  void test_submit_shouldRejectWhenTheQueueIsFull() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 1, Long.MAX_VALUE, 3);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      Future<String> running = executor.submit(1, () -> {
+        release.await();
+        return "running";
+      });
+      // the first generation is handed straight to the thread, the second fills the queue
+      Future<String> queued = executor.submit(1, () -> "queued");
+
+      GenerationRejectedException rejected = assertThrows(GenerationRejectedException.class, () -> executor.submit(1, () -> "rejected"));
+
+      assertEquals(GenerationExecutor.STATUS_SERVICE_UNAVAILABLE, rejected.getStatus());
+      assertEquals(3, rejected.getRetryAfterSeconds());
+      assertEquals(1, executor.getRejectedQueueFullCount());
+      release.countDown();
+      assertEquals("running", running.get());
+      assertEquals("queued", queued.get());
+      assertEquals(0, executor.getAdmittedCost());
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_submit_shouldRejectWhenTheCostBudgetIsSpent() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(2, 10, 10, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      Future<String> running = executor.submit(8, () -> {
+        release.await();
+        return "running";
+      });
+
+      GenerationRejectedException rejected = assertThrows(GenerationRejectedException.class, () -> executor.submit(5, () -> "rejected"));
+
+      assertEquals(GenerationExecutor.STATUS_TOO_MANY_REQUESTS, rejected.getStatus());
+      assertEquals(1, executor.getRejectedOverBudgetCount());
+      release.countDown();
+      running.get();
+      // a generation over the whole budget is admitted when nothing else is running
+      assertEquals("large", executor.submit(100, () -> "large").get());
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+}
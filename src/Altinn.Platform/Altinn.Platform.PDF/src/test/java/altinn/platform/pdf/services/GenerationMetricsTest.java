@@ -0,0 +1,63 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.PdfContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationMetricsTest {
+
+  @Test
+  void test_start_shouldRecordPhasesTaggedByApp() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    GenerationMetrics metrics = new GenerationMetrics(registry);
+    Instance instance = new Instance();
+    instance.setOrg("ttd");
+    instance.setAppId("ttd/receipt");
+    PdfContext pdfContext = new PdfContext();
+    pdfContext.setInstance(instance);
+
+    try (GenerationMetrics.Generation generation = metrics.start(pdfContext)) {
+      assertEquals(1, registry.get("pdf.generation.in.flight").gauge().value());
+      generation.recordPhase(GenerationMetrics.PHASE_LAYOUT, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+      generation.addRender("Input", 100);
+      generation.addRender("Input", 200);
+      generation.recordPdf(1024, 2);
+    }
+
+    assertEquals(0, registry.get("pdf.generation.in.flight").gauge().value());
+    assertTrue(registry.get("pdf.generation.phase").tags("phase", "layout", "app", "ttd/receipt", "org", "ttd")
+      .timer().totalTime(TimeUnit.MILLISECONDS) >= 5);
+    assertEquals(300, registry.get("pdf.generation.render").tag("type", "Input").timer().totalTime(TimeUnit.NANOSECONDS));
+    assertEquals(1, registry.get("pdf.generation.duration").timer().count());
+    assertEquals(1024, registry.get("pdf.generation.size").summary().totalAmount());
+    assertEquals(2, registry.get("pdf.generation.pages").summary().totalAmount());
+  }
+
+  @Test
+  void test_limitTag_shouldNotRecordAppsBeyondTheLimit() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    registry.config().meterFilter(GenerationMetrics.limitTag(GenerationMetrics.TAG_APP, 2));
+    GenerationMetrics metrics = new GenerationMetrics(registry);
+
+    for (int i = 0; i < 5; i++) {
+      Instance instance = new Instance();
+      instance.setOrg("ttd");
+      instance.setAppId("ttd/app-" + i);
+      PdfContext pdfContext = new PdfContext();
+      pdfContext.setInstance(instance);
+      try (GenerationMetrics.Generation generation = metrics.start(pdfContext)) {
+        generation.recordPdf(1024, 1);
+      }
+    }
+
+    assertEquals(2, registry.get("pdf.generation.duration").timers().size());
+    assertEquals(2, registry.get("pdf.generation.size").summaries().size());
+    assertEquals(1, registry.get("pdf.generation.in.flight").gauges().size());
+  }
+}
@@ -0,0 +1,162 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.PdfJob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobServiceTest {
+
+  private static final byte[] PDF = { '%', 'P', 'D', 'F' };
+
+  @TempDir
+  Path spillDirectory;
+
+  @Test
+  void test_submit_shouldKeepThePdfUntilItExpires() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfResultStore store = new PdfResultStore(1024, 0, spillDirectory);
+    JobService jobService = new JobService(executor, store, Duration.ZERO, 10, Duration.ZERO);
+    try {
+      PdfJob job = jobService.submit(new PdfContext(), generator(PDF));
+      PdfJob done = await(jobService, job.getId());
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+      assertEquals(JobService.STATUS_DONE, done.getStatus());
+      assertEquals(PDF.length, (long) done.getSize());
+      assertTrue(jobService.writePdf(job.getId(), output));
+      assertArrayEquals(PDF, output.toByteArray());
+      // kept for another download until it expires
+      assertTrue(jobService.writePdf(job.getId(), new ByteArrayOutputStream()));
+
+      assertEquals(1, jobService.evictExpired());
+      assertNull(jobService.getJob(job.getId()));
+      assertEquals(0, store.getMemoryBytes());
+    } finally {
+      jobService.shutdown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_submit_shouldFailTheJobWhenThePdfCanNotBeKept() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfResultStore store = new PdfResultStore(1, 1, spillDirectory);
+    JobService jobService = new JobService(executor, store, Duration.ofMinutes(1), 10, Duration.ZERO);
+    try {
+      PdfJob job = jobService.submit(new PdfContext(), generator(PDF));
+      PdfJob failed = await(jobService, job.getId());
+
+      assertEquals(JobService.STATUS_FAILED, failed.getStatus());
+      assertFalse(jobService.writePdf(job.getId(), new ByteArrayOutputStream()));
+      // not expired yet
+      assertEquals(0, jobService.evictExpired());
+    } finally {
+      jobService.shutdown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_submit_shouldFailTheJobWhenTheGenerationThrowsAnError() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfResultStore store = new PdfResultStore(1024, 0, spillDirectory);
+    JobService jobService = new JobService(executor, store, Duration.ZERO, 1, Duration.ZERO);
+    try {
+      PdfJob job = jobService.submit(new PdfContext(), new PDFGenerator(new PdfContext()) {
+        @Override
+        public ByteArrayOutputStream generatePDF() {
+          throw new StackOverflowError();
+        }
+      });
+      PdfJob failed = await(jobService, job.getId());
+
+      assertEquals(JobService.STATUS_FAILED, failed.getStatus());
+      assertEquals(1, jobService.evictExpired());
+      assertEquals(0, jobService.getJobCount());
+    } finally {
+      jobService.shutdown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_submit_shouldRejectWhenTooManyJobsAreKept() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfResultStore store = new PdfResultStore(1024, 0, spillDirectory);
+    JobService jobService = new JobService(executor, store, Duration.ofMinutes(1), 1, Duration.ZERO);
+    try {
+      PdfJob job = jobService.submit(new PdfContext(), generator(PDF));
+      await(jobService, job.getId());
+
+      GenerationRejectedException rejected = assertThrows(GenerationRejectedException.class,
+        () -> jobService.submit(new PdfContext(), generator(PDF)));
+
+      assertEquals(GenerationExecutor.STATUS_SERVICE_UNAVAILABLE, rejected.getStatus());
+      // the kept job expires within a minute
+      assertTrue(rejected.getRetryAfterSeconds() > 0 && rejected.getRetryAfterSeconds() <= 60);
+      assertEquals(1, jobService.getJobCount());
+    } finally {
+      jobService.shutdown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void test_shutdown_shouldRemoveTheJobsAndTheirPdfs() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfResultStore store = new PdfResultStore(0, 1024, spillDirectory);
+    JobService jobService = new JobService(executor, store, Duration.ofMinutes(1), 10, Duration.ZERO);
+    try {
+      PdfJob job = jobService.submit(new PdfContext(), generator(PDF));
+      await(jobService, job.getId());
+      assertEquals(PDF.length, store.getDiskBytes());
+
+      jobService.shutdown();
+
+      assertNull(jobService.getJob(job.getId()));
+      assertEquals(0, store.getDiskBytes());
+      try (Stream<Path> files = Files.list(spillDirectory)) {
+        assertEquals(0, files.count());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static PDFGenerator generator(byte[] pdf) {
+    return new PDFGenerator(new PdfContext()) {
+      @Override
+      public ByteArrayOutputStream generatePDF() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(pdf);
+        return output;
+      }
+    };
+  }
+
+  private static PdfJob await(JobService jobService, String id) throws InterruptedException {
+    for (int i = 0; i < 500; i++) {
+      PdfJob job = jobService.getJob(id);
+      if (JobService.STATUS_DONE.equals(job.getStatus()) || JobService.STATUS_FAILED.equals(job.getStatus())) {
+        return job;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("The job did not finish");
+  }
+}
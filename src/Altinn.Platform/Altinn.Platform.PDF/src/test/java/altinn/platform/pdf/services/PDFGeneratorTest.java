@@ -0,0 +1,96 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.FormLayout;
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.Party;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.PdfEstimate;
+import altinn.platform.pdf.models.TextResourceElement;
+import altinn.platform.pdf.models.TextResources;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.util.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PDFGeneratorTest {
+
+  /**
+   * The id of the paragraph of formLayoutNoGroups.json, laid out as the second layout
+   */
+  private static final String PARAGRAPH_ID = "d6cd758d-2d98-4232-a15f-cb89717625ec";
+
+  /**
+   * The text of the paragraph, only used by the second layout
+   */
+  private static final String PARAGRAPH_TEXT = "Second layout paragraph";
+
+  @Test
+  void test_estimate_shouldMatchThePagesOfTheGeneratedPdf() throws IOException {
+    PdfEstimate estimate = new PDFGenerator(createPdfContext()).estimate();
+    byte[] pdf = new PDFGenerator(createPdfContext()).generatePDF().toByteArray();
+
+    try (PDDocument document = PDDocument.load(pdf)) {
+      assertEquals(document.getNumberOfPages(), estimate.getPageCount());
+      assertEquals(estimate.getPageCount(), estimate.getPages().size());
+
+      int paragraphPage = estimate.getPages().stream()
+        .filter(page -> page.getComponentIds().contains(PARAGRAPH_ID))
+        .findFirst()
+        .orElseThrow()
+        .getPageNumber();
+      assertTrue(paragraphPage > 1);
+      // the component is drawn on the page the estimate placed it on, and on no page before it
+      for (int pageNumber = 1; pageNumber <= paragraphPage; pageNumber++) {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(pageNumber);
+        stripper.setEndPage(pageNumber);
+        String text = stripper.getText(document);
+        if (pageNumber == paragraphPage) {
+          assertTrue(text.contains(PARAGRAPH_TEXT));
+        } else {
+          assertFalse(text.contains(PARAGRAPH_TEXT));
+        }
+      }
+    }
+  }
+
+  private PdfContext createPdfContext() {
+    Gson gson = new Gson();
+    TreeMap<String, FormLayout> formLayouts = new TreeMap<>();
+    formLayouts.put("page1", gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithGroups.json")), FormLayout.class));
+    formLayouts.put("page2", gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutNoGroups.json")), FormLayout.class));
+
+    TextResourceElement paragraph = new TextResourceElement();
+    paragraph.setId("33316.Journalnummerdatadef33316.Label");
+    paragraph.setValue(PARAGRAPH_TEXT);
+    TextResources textResources = new TextResources();
+    textResources.setResources(new ArrayList<>());
+    textResources.getResources().add(paragraph);
+
+    Instance instance = new Instance();
+    instance.setId("1337/4f6b3d8c-7c6a-4d2b-9b4e-2a1f0c9d8e7a");
+    instance.setOrg("ttd");
+    Party party = new Party();
+    party.setName("Test party");
+
+    String xml = IOUtils.toString(this.getClass().getResourceAsStream("/formData/repeatingGroupFormData.xml"));
+    PdfContext pdfContext = new PdfContext();
+    pdfContext.setFormLayouts(formLayouts);
+    pdfContext.setTextResources(textResources);
+    pdfContext.setInstance(instance);
+    pdfContext.setParty(party);
+    pdfContext.setData(Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)));
+    return pdfContext;
+  }
+}
@@ -0,0 +1,131 @@
+package altinn.platform.pdf.services;
+
+import altinn.platform.pdf.models.Instance;
+import altinn.platform.pdf.models.Party;
+import altinn.platform.pdf.models.PdfContext;
+import altinn.platform.pdf.models.TextResources;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfBatchGeneratorTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void test_generate_shouldReportInvalidItemsWithoutFailingTheBatch() throws IOException {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfBatchGenerator batchGenerator = new PdfBatchGenerator(objectMapper, Validation.buildDefaultValidatorFactory().getValidator(), executor, 2);
+    List<Callable<PdfContext>> items = new ArrayList<>();
+    items.add(() -> objectMapper.readValue("{ not json", PdfContext.class));
+    items.add(PdfContext::new);
+    items.add(() -> null);
+
+    List<String> entries = new ArrayList<>();
+    JsonNode statuses;
+    try {
+      statuses = generate(batchGenerator, items, entries);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(List.of("status.json"), entries);
+    assertEquals(3, statuses.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i, statuses.get(i).get("index").asInt());
+      assertEquals(PdfBatchGenerator.STATUS_INVALID, statuses.get(i).get("status").asText());
+    }
+  }
+
+  @Test
+  void test_generate_shouldReportItemsRejectedByTheExecutor() throws Exception {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, 1, 4);
+    PdfBatchGenerator batchGenerator = new PdfBatchGenerator(objectMapper, Validation.buildDefaultValidatorFactory().getValidator(), executor, 2);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Callable<PdfContext>> items = new ArrayList<>();
+    items.add(this::createValidPdfContext);
+
+    List<String> entries = new ArrayList<>();
+    JsonNode statuses;
+    try {
+      // spends the whole cost budget while the batch is generated
+      executor.submit(1, () -> {
+        release.await();
+        return null;
+      });
+      statuses = generate(batchGenerator, items, entries);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+    assertEquals(List.of("status.json"), entries);
+    assertEquals(PdfBatchGenerator.STATUS_REJECTED, statuses.get(0).get("status").asText());
+    assertEquals(1, executor.getRejectedOverBudgetCount());
+  }
+
+  @Test
+  void test_generate_shouldReportMalformedJsonArrayItemsAndFinishTheZip() throws IOException {
+    GenerationExecutor executor = new GenerationExecutor(1, 10, Long.MAX_VALUE, 1);
+    PdfBatchGenerator batchGenerator = new PdfBatchGenerator(objectMapper, Validation.buildDefaultValidatorFactory().getValidator(), executor, 2);
+    String batch = "[{}, { not json }, {}]";
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      batchGenerator.generate(PdfBatchGenerator.readJsonItems(objectMapper, new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8))), output);
+    } finally {
+      executor.shutdown();
+    }
+    List<String> entries = new ArrayList<>();
+    JsonNode statuses = readZip(output, entries);
+    assertEquals(List.of("status.json"), entries);
+    assertEquals(2, statuses.size());
+    assertEquals(0, statuses.get(0).get("index").asInt());
+    assertEquals(PdfBatchGenerator.STATUS_INVALID, statuses.get(0).get("status").asText());
+    assertEquals(1, statuses.get(1).get("index").asInt());
+    assertEquals(PdfBatchGenerator.STATUS_INVALID, statuses.get(1).get("status").asText());
+    assertTrue(statuses.get(1).get("message").asText().startsWith("Could not read item or the items after it"));
+  }
+
+  private JsonNode generate(PdfBatchGenerator batchGenerator, List<Callable<PdfContext>> items, List<String> entries) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    batchGenerator.generate(items.iterator(), output);
+    return readZip(output, entries);
+  }
+
+  private JsonNode readZip(ByteArrayOutputStream output, List<String> entries) throws IOException {
+    JsonNode statuses = null;
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        entries.add(entry.getName());
+        if (entry.getName().equals("status.json")) {
+          statuses = objectMapper.readTree(zip.readAllBytes());
+        }
+      }
+    }
+    return statuses;
+  }
+
+  private PdfContext createValidPdfContext() {
+    PdfContext pdfContext = new PdfContext();
+    pdfContext.setTextResources(new TextResources());
+    pdfContext.setData("PFNramVtYS8+");
+    pdfContext.setInstance(new Instance());
+    pdfContext.setParty(new Party());
+    return pdfContext;
+  }
+}
@@ -0,0 +1,89 @@
+package altinn.platform.pdf.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfResultStoreTest {
+
+  @TempDir
+  Path spillDirectory;
+
+  @Test
+  void test_put_shouldSpillToDiskWhenTheMemoryBudgetIsSpent() throws IOException {
+    PdfResultStore store = new PdfResultStore(10, 10, spillDirectory);
+
+    assertTrue(store.put("memory", pdf(8)));
+    assertTrue(store.put("disk", pdf(8)));
+    assertFalse(store.put("full", pdf(8)));
+
+    assertEquals(8, store.getMemoryBytes());
+    assertEquals(8, store.getDiskBytes());
+    assertEquals(1, countSpilledFiles());
+    assertArrayEquals(pdf(8).toByteArray(), read(store, "memory"));
+    assertArrayEquals(pdf(8).toByteArray(), read(store, "disk"));
+    assertFalse(store.write("full", new ByteArrayOutputStream()));
+  }
+
+  @Test
+  void test_remove_shouldReleaseTheBudgetAndDeleteTheFile() throws IOException {
+    PdfResultStore store = new PdfResultStore(10, 10, spillDirectory);
+    store.put("memory", pdf(8));
+    store.put("disk", pdf(8));
+
+    store.remove("memory");
+    store.remove("disk");
+
+    assertEquals(0, store.getMemoryBytes());
+    assertEquals(0, store.getDiskBytes());
+    assertEquals(0, countSpilledFiles());
+    assertTrue(store.put("again", pdf(8)));
+  }
+
+  @Test
+  void test_close_shouldRemoveThePdfsAndDeleteTheSpillDirectory() throws IOException {
+    PdfResultStore store = new PdfResultStore(10, 10, spillDirectory);
+    store.put("memory", pdf(8));
+    store.put("disk", pdf(8));
+
+    store.close();
+
+    assertEquals(0, store.getMemoryBytes());
+    assertEquals(0, store.getDiskBytes());
+    assertFalse(store.write("disk", new ByteArrayOutputStream()));
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertEquals(0, files.count());
+    }
+    assertFalse(store.put("again", pdf(8)));
+  }
+
+  private long countSpilledFiles() throws IOException {
+    try (Stream<Path> files = Files.walk(spillDirectory)) {
+      return files.filter(Files::isRegularFile).count();
+    }
+  }
+
+  private static ByteArrayOutputStream pdf(int size) {
+    ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+    for (int i = 0; i < size; i++) {
+      pdf.write(i);
+    }
+    return pdf;
+  }
+
+  private static byte[] read(PdfResultStore store, String id) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    assertTrue(store.write(id, output));
+    return output.toByteArray();
+  }
+}
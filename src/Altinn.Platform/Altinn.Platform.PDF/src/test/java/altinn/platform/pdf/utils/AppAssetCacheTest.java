@@ -0,0 +1,134 @@
+package altinn.platform.pdf.utils;
+
+import altinn.platform.pdf.models.*;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.util.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class AppAssetCacheTest {
+
+  private static final String VARIABLE_KEY = "Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788.SkattemeldingEndringEtterFristPost-datadef-37130";
+
+  @Test
+  void test_get_shouldShareTheAssetsOfTheSameApp() throws IOException {
+    AppAssetCache cache = new AppAssetCache(10, Long.MAX_VALUE);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+
+    AppAssets first = cache.get(createPdfContext("Title"), font);
+    AppAssets second = cache.get(createPdfContext("Title"), font);
+    AppAssets changed = cache.get(createPdfContext("Another title"), font);
+
+    assertSame(first, second);
+    assertNotSame(first, changed);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void test_get_shouldEvictTheLeastRecentlyUsedApp() throws IOException {
+    AppAssetCache cache = new AppAssetCache(2, Long.MAX_VALUE);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+
+    AppAssets first = cache.get(createPdfContext("First"), font);
+    cache.get(createPdfContext("Second"), font);
+    cache.get(createPdfContext("First"), font);
+    cache.get(createPdfContext("Third"), font);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(first, cache.get(createPdfContext("First"), font));
+  }
+
+  @Test
+  void test_get_shouldNotCacheAssetsHeavierThanTheCache() throws IOException {
+    AppAssetCache cache = new AppAssetCache(10, 1);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+
+    cache.get(createPdfContext("Title"), font);
+
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  void test_get_shouldKeyBoundContextsByTheirAppParts() throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper()
+      .registerModule(new AppAssetsKeyModule())
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    AppAssetCache cache = new AppAssetCache(10, Long.MAX_VALUE);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+    Gson gson = new Gson();
+    String first = gson.toJson(createPdfContext("Title")).replaceFirst("\\{", "{\"data\":\"Zmlyc3Q=\",\"appAssetsKey\":\"injected\",");
+    String second = gson.toJson(createPdfContext("Title")).replaceFirst("\\{", "{\"data\":\"c2Vjb25k\",");
+    String changed = gson.toJson(createPdfContext("Another title"));
+
+    PdfContext firstContext = objectMapper.readValue(first, PdfContext.class);
+    PdfContext secondContext = objectMapper.readValue(second, PdfContext.class);
+    PdfContext changedContext = objectMapper.readValue(changed, PdfContext.class);
+
+    assertEquals(firstContext.getAppAssetsKey(), secondContext.getAppAssetsKey());
+    assertNotEquals(firstContext.getAppAssetsKey(), changedContext.getAppAssetsKey());
+    assertSame(cache.get(firstContext, font), cache.get(secondContext, font));
+    assertNotSame(cache.get(firstContext, font), cache.get(changedContext, font));
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  void test_resolveTextResources_shouldNotChangeTheSharedResources() throws IOException, XMLStreamException {
+    AppAssetCache cache = new AppAssetCache(10, Long.MAX_VALUE);
+    FontMetrics font = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM));
+    AppAssets assets = cache.get(createPdfContext("Title"), font);
+    String xml = IOUtils.toString(this.getClass().getResourceAsStream("/formData/repeatingGroupFormData.xml"));
+    FormDataIndex formData = FormUtils.readFormData(Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)), null, value -> value);
+
+    TextResources resolved = assets.resolveTextResources(formData);
+    TextResources resolvedAgain = assets.resolveTextResources(null);
+
+    assertEquals("Title", resolved.getResourceById("title").getValue());
+    assertEquals("Post: " + FormUtils.getFormDataByKey(VARIABLE_KEY, formData), resolved.getResourceById("variable").getValue());
+    assertEquals("Post: ", resolvedAgain.getResourceById("variable").getValue());
+    assertSame(resolved.getResourceById("title"), resolvedAgain.getResourceById("title"));
+  }
+
+  private PdfContext createPdfContext(String title) throws IOException {
+    Gson gson = new Gson();
+    TreeMap<String, FormLayout> formLayouts = new TreeMap<>();
+    formLayouts.put("page1", gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithGroups.json")), FormLayout.class));
+    List<TextResourceElement> resources = new ArrayList<>();
+    TextResourceElement titleResource = new TextResourceElement();
+    titleResource.setId("title");
+    titleResource.setValue(title);
+    resources.add(titleResource);
+    TextResourceVariableElement variable = new TextResourceVariableElement();
+    variable.setKey(VARIABLE_KEY);
+    variable.setDataSource("dataModel.default");
+    TextResourceElement variableResource = new TextResourceElement();
+    variableResource.setId("variable");
+    variableResource.setValue("Post: {0}");
+    variableResource.setVariables(List.of(variable));
+    resources.add(variableResource);
+    TextResources textResources = new TextResources();
+    textResources.setResources(resources);
+    PdfContext pdfContext = new PdfContext();
+    pdfContext.setFormLayouts(formLayouts);
+    pdfContext.setTextResources(textResources);
+    pdfContext.setInstance(new Instance());
+    return pdfContext;
+  }
+}
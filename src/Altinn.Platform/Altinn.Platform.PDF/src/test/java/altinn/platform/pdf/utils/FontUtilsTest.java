@@ -0,0 +1,46 @@
+package altinn.platform.pdf.utils;
+
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FontUtilsTest {
+
+  @Test
+  void test_getTrueTypeFont_shouldParseFontOnce() throws IOException {
+    TrueTypeFont first = FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM);
+    long hits = FontUtils.getHitCount();
+    TrueTypeFont second = FontUtils.getTrueTypeFont(FontUtils.INTER_MEDIUM);
+
+    assertSame(first, second);
+    assertEquals(hits + 1, FontUtils.getHitCount());
+    assertTrue(FontUtils.getEstimatedHeapUsage() > 0);
+  }
+
+  @Test
+  void test_loadFont_shouldOutliveDocument() throws IOException {
+    try (PDDocument document = new PDDocument()) {
+      PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_BOLD);
+      assertNotNull(font);
+      assertTrue(font.getStringWidth("Kvittering") > 0);
+    }
+    try (PDDocument document = new PDDocument()) {
+      PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_BOLD);
+      assertTrue(font.getStringWidth("Kvittering") > 0);
+    }
+  }
+
+  @Test
+  void test_getTrueTypeFont_shouldThrowForMissingFont() {
+    assertThrows(IOException.class, () -> FontUtils.getTrueTypeFont("font/does-not-exist.ttf"));
+  }
+}
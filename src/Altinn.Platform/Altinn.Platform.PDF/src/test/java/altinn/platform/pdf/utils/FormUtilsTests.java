@@ -5,25 +5,22 @@ import altinn.platform.pdf.models.FormLayoutElement;
 import com.google.gson.Gson;
 import io.micrometer.core.instrument.util.IOUtils;
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
-import java.io.StringReader;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class FormUtilsTests {
 
-  private Document formData;
+  private FormDataIndex formData;
 
   @Test
   void test_getFilteredLayout_componentsPartOfGroupsShouldBeFilteredOut() {
@@ -56,8 +53,20 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_setupRepeatingGroups_shouldReturnCorrectCount() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getElementById_shouldReturnFirstElementWithId() {
+    Gson gson = new Gson();
+    FormLayout formLayout = gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithGroups.json")), FormLayout.class);
+    List<FormLayoutElement> layout = formLayout.getData().getLayout();
+
+    for (FormLayoutElement element : layout) {
+      assertEquals(layout.stream().filter(e -> e.getId().equals(element.getId())).findFirst().orElse(null), formLayout.getData().getElementById(element.getId()));
+    }
+    assertEquals(null, formLayout.getData().getElementById("does-not-exist"));
+  }
+
+  @Test
+  void test_setupRepeatingGroups_shouldReturnCorrectCount() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     Gson gson = new Gson();
     List<FormLayoutElement> formLayout = gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithGroups.json")), FormLayout.class)
       .getData()
@@ -68,21 +77,26 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_setupRepeatingGroups_shouldReturnCorrectCountForNestedGroups() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_setupRepeatingGroups_shouldReturnCorrectCountForNestedGroups() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     Gson gson = new Gson();
     List<FormLayoutElement> formLayout = gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithNestedGroups.json")), FormLayout.class)
       .getData()
       .getLayout();
     List<FormLayoutElement> groups = FormUtils.setupRepeatingGroups(formLayout, formData);
+    // the nested group is counted for each row of its parent as the rows are laid out
+    assertEquals(1, groups.size());
     assertEquals(3, groups.get(0).getCount());
-    assertEquals(3, groups.get(1).getCount());
-    assertEquals(2, groups.get(2).getCount());
+    BindingContext.Group parent = BindingContext.ROOT.forGroup(groups.get(0).getDataModelBindings().get("group"));
+    String nestedGroup = formLayout.get(1).getDataModelBindings().get("group");
+    assertEquals(3, FormUtils.getGroupCount(parent.forRow(0).resolveGroupBinding(nestedGroup), formData));
+    assertEquals(2, FormUtils.getGroupCount(parent.forRow(1).resolveGroupBinding(nestedGroup), formData));
+    assertEquals(0, FormUtils.getGroupCount(parent.forRow(2).resolveGroupBinding(nestedGroup), formData));
   }
 
   @Test
-  void test_getGroupCount_shouldReturnCorrectCount() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getGroupCount_shouldReturnCorrectCount() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     int count = FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788", formData);
     int nestedCount_1 = FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].nested-grp-1234", formData);
     int nestedCount_2 = FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[1].nested-grp-1234", formData);
@@ -93,8 +107,30 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_getGroupCount_shouldReturnZeroForNonExistentGroup() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getGroupCount_shouldCountNestedGroupsOfParentRowsAboveNine() throws XMLStreamException {
+    StringBuilder xml = new StringBuilder("<Skjema><parent-grp>");
+    for (int row = 0; row < 12; row++) {
+      xml.append("<rows>");
+      for (int child = 0; child <= row; child++) {
+        xml.append("<child-grp><name>").append(row).append('-').append(child).append("</name></child-grp>");
+      }
+      xml.append("</rows>");
+    }
+    xml.append("</parent-grp></Skjema>");
+    String base64 = Base64.getEncoder().encodeToString(xml.toString().getBytes(StandardCharsets.UTF_8));
+    FormDataIndex formData = FormUtils.readFormData(base64, null, value -> value);
+
+    assertEquals(12, FormUtils.getGroupCount("parent-grp.rows", formData));
+    assertEquals(1, FormUtils.getGroupCount("parent-grp.rows[0].child-grp", formData));
+    assertEquals(11, FormUtils.getGroupCount("parent-grp.rows[10].child-grp", formData));
+    assertEquals(12, FormUtils.getGroupCount("parent-grp.rows[11].child-grp", formData));
+    assertEquals(0, FormUtils.getGroupCount("parent-grp.rows[12].child-grp", formData));
+    assertEquals("11-11", FormUtils.getFormDataByKey("parent-grp.rows[11].child-grp[11].name", formData));
+  }
+
+  @Test
+  void test_getGroupCount_shouldReturnZeroForNonExistentGroup() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     int count = FormUtils.getGroupCount("Group.DoesNotExist", formData);
     int count2 = FormUtils.getGroupCount("GroupWithNoDots", formData);
     assertEquals(0, count);
@@ -102,15 +138,15 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_getFormDataByKey_shouldReturnCorrectValue() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getFormDataByKey_shouldReturnCorrectValue() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     String result = FormUtils.getFormDataByKey("En-grp.Et-felt", formData);
     assertEquals("En verdi", result);
   }
 
   @Test
-  void test_getFormDataByKey_shouldReturnCorrectValueForRepeatingGroup() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getFormDataByKey_shouldReturnCorrectValueForRepeatingGroup() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
 
     String group1_frist = FormUtils.getFormDataByKey("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].SkattemeldingEndringEtterFristPost-datadef-37130.value", formData);
     String group1_belop = FormUtils.getFormDataByKey("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].SkattemeldingEndringEtterFristOpprinneligBelop-datadef-37131.value", formData);
@@ -138,8 +174,8 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_getFormDataByKey_shouldReturnCorrectValueForNestedRepeatingGroup() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getFormDataByKey_shouldReturnCorrectValueForNestedRepeatingGroup() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     String nestedString_1 = FormUtils.getFormDataByKey("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].nested-grp-1234[0].NestedString", formData);
     String nestedInt_1 = FormUtils.getFormDataByKey("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].nested-grp-1234[0].NestedInt", formData);
 
@@ -160,12 +196,103 @@ class FormUtilsTests {
   }
 
   @Test
-  void test_getFormDataByKey_shouldReturnEmptyStringForNonExistentBinding() throws IOException, SAXException, ParserConfigurationException {
-    Document formData = readAndParseFormData();
+  void test_getFormDataByKey_shouldIgnoreCaseAndDashes() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
+    assertEquals("En verdi", FormUtils.getFormDataByKey("engrp.ET-FELT", formData));
+    assertEquals("En verdi", FormUtils.getFormDataByKey("En-grp.Et-felt.value", formData));
+  }
+
+  @Test
+  void test_compileBindingPath_shouldNormalizeSegmentsAndParseIndices() {
+    BindingPath path = BindingPath.compile("Root-grp.Group-grp[12].Field.value");
+    assertEquals(3, path.size());
+    assertEquals("rootgrp", path.getName(0));
+    assertEquals(0, path.getIndex(0));
+    assertEquals("groupgrp", path.getName(1));
+    assertEquals(12, path.getIndex(1));
+    assertEquals("field", path.getName(2));
+  }
+
+  @Test
+  void test_getFormDataByKey_shouldReturnEmptyStringForNonExistentBinding() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
     String result = FormUtils.getFormDataByKey("Does.Not.Exist", formData);
     assertEquals("", result);
   }
 
+  @Test
+  void test_formDataIndex_shouldCountGroupOccurrences() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
+
+    assertEquals(3, FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788", formData));
+    assertEquals(3, FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[0].nested-grp-1234", formData));
+    assertEquals(2, FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[1].nested-grp-1234", formData));
+    assertEquals(0, FormUtils.getGroupCount("Endringsmelding-grp-9786.OversiktOverEndringene-grp-9788[2].nested-grp-1234", formData));
+    assertEquals(0, FormUtils.getGroupCount("Group.DoesNotExist", formData));
+  }
+
+  @Test
+  void test_readFormData_shouldOnlyKeepReferencedValues() throws XMLStreamException {
+    String xml = "<model><a-grp><b>first</b><c>second\u0001</c></a-grp><a-grp><b>third</b></a-grp></model>";
+    String base64 = Base64.getMimeEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8));
+    Set<String> bindings = Collections.singleton(BindingPath.normalizeBinding("A-grp[{0}].B.value"));
+
+    FormDataIndex formData = FormUtils.readFormData(base64, bindings, String::toUpperCase);
+
+    assertEquals("FIRST", FormUtils.getFormDataByKey("a-grp[0].b", formData));
+    assertEquals("THIRD", FormUtils.getFormDataByKey("a-grp[1].b", formData));
+    assertEquals("", FormUtils.getFormDataByKey("a-grp[0].c", formData));
+    assertEquals(2, FormUtils.getGroupCount("a-grp", formData));
+  }
+
+  @Test
+  void test_readFormData_shouldDecodeUrlSafeBase64() throws XMLStreamException {
+    String xml = "<model><a>s??>~?</a></model>";
+    String base64 = Base64.getUrlEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8));
+    assertTrue(base64.contains("-") && base64.contains("_"));
+
+    FormDataIndex formData = FormUtils.readFormData(base64, null, value -> value);
+
+    assertEquals("s??>~?", FormUtils.getFormDataByKey("a", formData));
+  }
+
+  @Test
+  void test_setupRepeatingGroups_shouldNotChangeLayout() throws XMLStreamException {
+    FormDataIndex formData = readFormData();
+    Gson gson = new Gson();
+    List<FormLayoutElement> formLayout = gson.fromJson(IOUtils.toString(this.getClass().getResourceAsStream("/formLayout/formLayoutWithNestedGroups.json")), FormLayout.class)
+      .getData()
+      .getLayout();
+    List<FormLayoutElement> groups = FormUtils.setupRepeatingGroups(formLayout, formData);
+
+    assertEquals(3, groups.get(0).getCount());
+    assertEquals(0, formLayout.stream().filter(e -> e.getId().equals(groups.get(0).getId())).findFirst().orElseThrow().getCount());
+  }
+
+  @Test
+  void test_bindingContext_shouldResolveBindingsForRows() {
+    assertEquals("owner.name", BindingContext.ROOT.resolve("owner.name"));
+
+    BindingContext ownerRow = BindingContext.ROOT.forRow("owner", 1);
+    assertEquals("owner[1].name", ownerRow.resolve("owner.name"));
+    assertEquals("ownerName", ownerRow.resolve("ownerName"));
+
+    BindingContext parentRow = BindingContext.ROOT.forRow("a.b", 2);
+    String nestedGroupBinding = parentRow.resolveGroupBinding("a.b.c");
+    assertEquals("a.b[2].c", nestedGroupBinding);
+    BindingContext nestedRow = parentRow.forRow(nestedGroupBinding, 1);
+    assertEquals("a.b[2].c[1].d", nestedRow.resolve("a.b.c.d"));
+  }
+
+  @Test
+  void test_bindingTemplate_shouldIndexEveryRow() {
+    BindingTemplate template = BindingTemplate.compile("schema.owner.ownerPet.owner[1].name", "owner");
+
+    assertEquals("schema.owner[0].ownerPet.owner[1].name", template.apply(0));
+    assertEquals("schema.owner[12].ownerPet.owner[1].name", template.apply(12));
+    assertEquals(true, BindingTemplate.compile("ownerName", "owner").isConstant());
+  }
+
   @Test
   void test_setGroupIndexForBinding() {
 
@@ -191,17 +318,13 @@ class FormUtilsTests {
     }
   }
 
-  private Document readAndParseFormData() throws ParserConfigurationException, IOException, SAXException {
+  private FormDataIndex readFormData() throws XMLStreamException {
     if (this.formData != null) {
       return formData;
     }
     String xmlAsString = IOUtils.toString(this.getClass().getResourceAsStream("/formData/repeatingGroupFormData.xml"));
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-    DocumentBuilder builder = factory.newDocumentBuilder();
-    formData = builder.parse(new InputSource(new StringReader(xmlAsString)));
+    String base64 = Base64.getEncoder().encodeToString(xmlAsString.getBytes(StandardCharsets.UTF_8));
+    formData = FormUtils.readFormData(base64, null, value -> value);
     return formData;
   }
 }
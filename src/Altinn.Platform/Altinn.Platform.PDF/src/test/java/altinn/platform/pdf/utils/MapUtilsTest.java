@@ -3,6 +3,7 @@ package altinn.platform.pdf.utils;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -84,4 +85,47 @@ class MapUtilsTest {
     assertEquals(expectedResult, result);
   }
 
+  @Test
+  void test_getLabelFromValue_shouldFindMatchInInvertedOptions() {
+    // Arrange
+    Map<String, String> labelsByValue = MapUtils.invert(Dictionary.get("radioButtonOptions"));
+    String innerValue = "Oppsigelse";
+    String expectedResult = "list.option1";
+
+    // Act
+    String result = MapUtils.getLabelFromValue(labelsByValue, innerValue);
+
+    // Assert
+    assertEquals(expectedResult, result);
+  }
+
+  @Test
+  void test_getLabelFromValue_shouldReturnValueWithoutMatchInInvertedOptions() {
+    // Arrange
+    Map<String, String> labelsByValue = MapUtils.invert(Dictionary.get("invalidKey"));
+    String innerValue = "Oppsigelse";
+    String expectedResult = "Oppsigelse";
+
+    // Act
+    String result = MapUtils.getLabelFromValue(labelsByValue, innerValue);
+
+    // Assert
+    assertEquals(expectedResult, result);
+  }
+
+  @Test
+  void test_invert_shouldKeepTheFirstLabelOfAValue() {
+    // Arrange
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("first", "Ja");
+    options.put("second", "Ja");
+    options.put("", null);
+
+    // Act
+    Map<String, String> labelsByValue = MapUtils.invert(options);
+
+    // Assert
+    assertEquals(MapUtils.getLabelFromValue(Map.of("options", options), "options", "Ja"), MapUtils.getLabelFromValue(labelsByValue, "Ja"));
+    assertEquals("", MapUtils.getLabelFromValue(labelsByValue, null));
+  }
 }
@@ -3,28 +3,21 @@ package altinn.platform.pdf.utils;
 import altinn.platform.pdf.models.*;
 import io.micrometer.core.instrument.util.IOUtils;
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
-import java.io.StringReader;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class OptionUtilsTest {
 
-  private Document formData;
+  private FormDataIndex formData;
 
   @Test
-  void testGetOptionsFromOptionSource() throws IOException, SAXException, ParserConfigurationException {
+  void testGetOptionsFromOptionSource() throws XMLStreamException {
     // Arrange
-    Document formData = readAndParseFormData();
+    FormDataIndex formData = readFormData();
 
     FormLayoutElement group = new FormLayoutElement();
     group.setCount(1);
@@ -68,17 +61,13 @@ class OptionUtilsTest {
   }
 
 
-  private Document readAndParseFormData() throws ParserConfigurationException, IOException, SAXException {
+  private FormDataIndex readFormData() throws XMLStreamException {
     if (this.formData != null) {
       return formData;
     }
     String xmlAsString = IOUtils.toString(this.getClass().getResourceAsStream("/formData/repeatingGroupFormData.xml"));
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
-    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-    DocumentBuilder builder = factory.newDocumentBuilder();
-    formData = builder.parse(new InputSource(new StringReader(xmlAsString)));
+    String base64 = Base64.getEncoder().encodeToString(xmlAsString.getBytes(StandardCharsets.UTF_8));
+    formData = FormUtils.readFormData(base64, null, value -> value);
     return formData;
   }
 
@@ -13,6 +13,8 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TextUtilsTest {
 
@@ -185,4 +187,107 @@ class TextUtilsTest {
     String expected = "AppNameFromOldKey";
     assertEquals(expected, result);
   }
+
+  @Test
+  void test_getTextResourceByKey_shouldReturnFirstMatchOrKey() {
+    TextResources textResources = new TextResources();
+    List<TextResourceElement> resources = new ArrayList<>();
+    resources.add(createTextResource("title", "First title"));
+    resources.add(createTextResource("title", "Second title"));
+    textResources.setResources(resources);
+
+    assertEquals("First title", TextUtils.getTextResourceByKey("title", textResources));
+    assertEquals("missing", TextUtils.getTextResourceByKey("missing", textResources));
+  }
+
+  @Test
+  void test_getTextResourceByKey_shouldSeeResourcesAddedAfterLookup() {
+    TextResources textResources = new TextResources();
+    List<TextResourceElement> resources = new ArrayList<>();
+    resources.add(createTextResource("title", "Title"));
+    textResources.setResources(resources);
+    assertEquals("description", TextUtils.getTextResourceByKey("description", textResources));
+
+    resources.add(createTextResource("description", "Description"));
+    assertEquals("Description", TextUtils.getTextResourceByKey("description", textResources));
+
+    textResources.setResources(List.of(createTextResource("title", "Replaced title")));
+    assertEquals("Replaced title", TextUtils.getTextResourceByKey("title", textResources));
+  }
+
+  @Test
+  void test_splitTextToLines_shouldWrapEachTextOnceThroughTheCache() throws IOException {
+    PDDocument document = new PDDocument();
+    PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_MEDIUM);
+    String text = "Dette er en lang tekst som må deles over flere linjer for å få plass innenfor bredden av siden.";
+    TextLayoutCache textLayouts = new TextLayoutCache();
+
+    float height = textLayouts.getHeightNeededForText(text, font, 10, 100);
+    List<String> lines = textLayouts.splitTextToLines(text, font, 10, 100);
+
+    assertEquals(TextUtils.splitTextToLines(text, font, 10, 100), lines);
+    assertEquals(TextUtils.getHeightNeededForText(text, font, 10, 100), height);
+    assertEquals(TextUtils.getHeightNeededForText("", font, 10, 100), textLayouts.getHeightNeededForText("", font, 10, 100));
+    assertEquals(1, textLayouts.getHitCount());
+    assertEquals(2, textLayouts.getMissCount());
+  }
+
+  @Test
+  void test_removeIllegalChars_shouldReturnUnchangedStringAsIs() throws IOException {
+    PDDocument document = new PDDocument();
+    PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_MEDIUM);
+    FontMetrics metrics = FontMetrics.of(font);
+
+    String valid = "Dette er en tekst som bør gå helt fint\r\nog ingenting skal være i veien";
+    assertSame(valid, TextUtils.removeIllegalChars(valid, metrics));
+    assertEquals("ok", TextUtils.removeIllegalChars("\u0001o\uE000k\u200B", metrics));
+    assertTrue(metrics.isSupported('å'));
+    assertTrue(!metrics.isSupported(0x1F600));
+  }
+
+  @Test
+  void test_getStringWidth_shouldMatchFontStringWidth() throws IOException {
+    PDDocument document = new PDDocument();
+    PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_MEDIUM);
+    FontMetrics metrics = FontMetrics.of(font);
+
+    String text = "Nord: ÁáČčĐđŊŋŠšŦŧŽž, ЁЂЃЄЅІЇЈЉЊЋЌЍЎЏ, Dette er en tekst (‿) 0123456789 WWW iii";
+    assertEquals(font.getStringWidth(text), metrics.getStringWidth(text));
+    assertSame(metrics, FontMetrics.of(FontUtils.loadFont(new PDDocument(), FontUtils.INTER_MEDIUM)));
+  }
+
+  @Test
+  void test_getHeight_shouldMatchFontHeight() throws IOException {
+    PDDocument document = new PDDocument();
+    PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_BOLD);
+    FontMetrics metrics = FontMetrics.of(FontUtils.getTrueTypeFont(FontUtils.INTER_BOLD));
+
+    assertEquals(TextUtils.getFontHeight(font, 10), TextUtils.getFontHeight(metrics, 10));
+    assertEquals(TextUtils.getHeightNeededForLines(3, font, 10), TextUtils.getHeightNeededForLines(3, metrics, 10));
+  }
+
+  @Test
+  void test_splitTextToLines_shouldSplitLongWordsInOnePass() throws IOException {
+    PDDocument document = new PDDocument();
+    PDType0Font font = FontUtils.loadFont(document, FontUtils.INTER_MEDIUM);
+    String word = "abcdefghij".repeat(500);
+
+    List<String> lines = TextUtils.splitTextToLines("kort " + word + " slutt", font, 10, 200);
+
+    assertEquals("kort", lines.get(0));
+    assertEquals(word, String.join("", lines.subList(1, lines.size() - 1)));
+    assertEquals("slutt", lines.get(lines.size() - 1));
+    for (String line : lines.subList(1, lines.size() - 2)) {
+      // a split line ends with the first character that no longer fits
+      assertTrue(TextUtils.getStringWidth(line.substring(0, line.length() - 1), font, 10) <= 200);
+      assertTrue(TextUtils.getStringWidth(line, font, 10) > 200);
+    }
+  }
+
+  private TextResourceElement createTextResource(String id, String value) {
+    TextResourceElement resource = new TextResourceElement();
+    resource.setId(id);
+    resource.setValue(value);
+    return resource;
+  }
 }
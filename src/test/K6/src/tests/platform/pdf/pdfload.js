@@ -0,0 +1,67 @@
+/*
+    Load test of the pdf service, to compare request handling on platform threads with virtual threads.
+    Runs against a locally started service, without authentication.
+
+    Start the service once per mode, on a JDK 21 runtime so both modes run on the same JVM:
+      java -jar Altinn.Platform.PDF-1.0.jar --pdf.virtual-threads=false
+      java -jar Altinn.Platform.PDF-1.0.jar --pdf.virtual-threads=true
+    and run the same load against each, naming the run after the mode:
+      k6 run src/tests/platform/pdf/pdfload.js -e mode=platform -e rate=20 -e duration=2m
+      k6 run src/tests/platform/pdf/pdfload.js -e mode=virtual -e rate=20 -e duration=2m
+
+    Optional: -e pdfurl=http://localhost:5070/api/v1/generate -e maxvus=200
+    Each run writes its summary to platformPdfLoad-<mode>.json. Compare the http_req_duration percentiles, the
+    iteration rate reached and the rejected (429/503) counts of the two summaries.
+*/
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+import { addErrorCount } from '../../../errorcounter.js';
+
+const pdfUrl = __ENV.pdfurl ? __ENV.pdfurl : 'http://localhost:5070/api/v1/generate';
+const mode = __ENV.mode ? __ENV.mode : 'unknown';
+const rate = __ENV.rate ? parseInt(__ENV.rate) : 20;
+const duration = __ENV.duration ? __ENV.duration : '2m';
+const maxVus = __ENV.maxvus ? parseInt(__ENV.maxvus) : 200;
+
+let pdfInputJson = open('../../../data/pdfInput.json');
+let rejected = new Counter('rejected');
+
+export const options = {
+  scenarios: {
+    generate: {
+      // a fixed arrival rate, so a slower mode shows up as latency and queueing instead of a lower request rate
+      executor: 'constant-arrival-rate',
+      rate: rate,
+      timeUnit: '1s',
+      duration: duration,
+      preAllocatedVUs: Math.min(maxVus, rate * 2),
+      maxVUs: maxVus,
+    },
+  },
+  summaryTrendStats: ['avg', 'min', 'med', 'p(90)', 'p(95)', 'p(99)', 'max'],
+  thresholds: {
+    errors: ['count<1'],
+  },
+};
+
+export default function () {
+  var params = { headers: { 'Content-Type': 'application/json' } };
+  var res = http.post(pdfUrl, pdfInputJson, params);
+  if (res.status === 429 || res.status === 503) {
+    // the service is saturated, counted separately from errors
+    rejected.add(1, { status: String(res.status) });
+    return;
+  }
+  var success = check(res, {
+    'Generate PDF Status is 200': (r) => r.status === 200,
+    'Generate PDF Content Type is application pdf': (r) => r.headers['Content-Type'] === 'application/pdf',
+  });
+  addErrorCount(success);
+}
+
+export function handleSummary(data) {
+  let result = {};
+  result['platformPdfLoad-' + mode + '.json'] = JSON.stringify(data, null, 2);
+  return result;
+}